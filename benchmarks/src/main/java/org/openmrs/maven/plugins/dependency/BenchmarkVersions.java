@@ -0,0 +1,117 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+
+/**
+ * Generates versions for the benchmarks, shaped like those of a large OpenMRS distribution, with ten artifacts in each
+ * group and one in ten versions a timestamped SNAPSHOT.  The same seed always generates the same versions.
+ */
+public class BenchmarkVersions {
+
+	public static final int ARTIFACTS_PER_GROUP = 10;
+
+	/**
+	 * @return a sorted map of groupId to artifactId to version, with the passed number of entries
+	 */
+	public static Map<String, Map<String, String>> generate(int entries, long seed) {
+		Random random = new Random(seed);
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		for (int i = 0; i < entries; i++) {
+			String groupId = "org.openmrs.group" + (i / ARTIFACTS_PER_GROUP);
+			Map<String, String> artifacts = ret.get(groupId);
+			if (artifacts == null) {
+				artifacts = new TreeMap<>();
+				ret.put(groupId, artifacts);
+			}
+			artifacts.put("artifact" + i + "-api", randomVersion(random));
+		}
+		return ret;
+	}
+
+	/**
+	 * @return a copy of the passed versions with the passed percentage of versions changed
+	 */
+	public static Map<String, Map<String, String>> change(Map<String, Map<String, String>> versions, int percent,
+			long seed) {
+		Random random = new Random(seed);
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		for (Map.Entry<String, Map<String, String>> group : versions.entrySet()) {
+			Map<String, String> artifacts = new TreeMap<>(group.getValue());
+			for (Map.Entry<String, String> artifact : artifacts.entrySet()) {
+				if (random.nextInt(100) < percent) {
+					artifact.setValue(randomVersion(random));
+				}
+			}
+			ret.put(group.getKey(), artifacts);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return an artifact for each of the passed versions, in a random order, as they would be resolved by a goal
+	 */
+	public static List<Artifact> toArtifacts(Map<String, Map<String, String>> versions, long seed) {
+		List<Artifact> ret = new ArrayList<>();
+		DefaultArtifactHandler handler = new DefaultArtifactHandler("jar");
+		for (Map.Entry<String, Map<String, String>> group : versions.entrySet()) {
+			for (Map.Entry<String, String> artifact : group.getValue().entrySet()) {
+				ret.add(new DefaultArtifact(group.getKey(), artifact.getKey(), artifact.getValue(), "compile", "jar",
+						null, handler));
+			}
+		}
+		Collections.shuffle(ret, new Random(seed));
+		return ret;
+	}
+
+	/**
+	 * Writes the passed versions to the passed file in the passed format, as a goal writes a versions file
+	 */
+	public static void write(Map<String, Map<String, String>> versions, VersionsFormat format, File file)
+			throws IOException {
+		try (VersionsWriter writer = new VersionsWriter(format, format.openOutputStream(file), null)) {
+			writer.write(new VersionsDiff.MapSource(versions));
+		}
+	}
+
+	/**
+	 * @return the number of entries read from the passed source
+	 */
+	public static int count(VersionsDiff.Source source) throws IOException {
+		int ret = 0;
+		try (VersionsDiff.EntryIterator entries = source.open()) {
+			while (entries.next() != null) {
+				ret++;
+			}
+		}
+		return ret;
+	}
+
+	private static String randomVersion(Random random) {
+		String version = random.nextInt(5) + "." + random.nextInt(20) + "." + random.nextInt(10);
+		if (random.nextInt(10) == 0) {
+			version += "-2024" + (1000 + random.nextInt(9000)) + "." + (100000 + random.nextInt(900000)) + "-"
+					+ (1 + random.nextInt(100));
+		}
+		return version;
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures hashing a single file on the calling thread, as the hash goal does for each dependency that is neither in
+ * the hash cache nor has a checksum file, for each built-in algorithm across file sizes.
+ * The file is read from the page cache after the first iteration, so this measures hashing rather than the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class HashFileBenchmark {
+
+	@Param({ HashAlgorithms.SHA1_HEX, HashAlgorithms.MD5_HEX, HashAlgorithms.SHA256_HEX, HashAlgorithms.XXHASH64 })
+	public String algorithm;
+
+	@Param({ "1024", "1048576", "16777216" })
+	public int size;
+
+	private File file;
+
+	private HashingEngine engine;
+
+	@Setup
+	public void setUp() throws Exception {
+		file = File.createTempFile("hash-benchmark", ".jar");
+		byte[] bytes = new byte[size];
+		new Random(size).nextBytes(bytes);
+		Files.write(file.toPath(), bytes);
+		engine = new HashingEngine(HashAlgorithms.forName(algorithm), 1);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file.toPath());
+	}
+
+	@Benchmark
+	public String hashFile() throws IOException {
+		return engine.hashFile(file);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures comparing two sets of versions, as the compare-versions goal does, with one in ten versions changed.
+ * Versions are compared both in memory, and streamed from YAML files as the goal reads them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VersionsDiffBenchmark {
+
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	private Map<String, Map<String, String>> from;
+
+	private Map<String, Map<String, String>> to;
+
+	private File fromFile;
+
+	private File toFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		from = BenchmarkVersions.generate(entries, entries);
+		to = BenchmarkVersions.change(from, 10, entries);
+		fromFile = File.createTempFile("versions-from-benchmark", ".yml");
+		toFile = File.createTempFile("versions-to-benchmark", ".yml");
+		BenchmarkVersions.write(from, VersionsFormat.YAML, fromFile);
+		BenchmarkVersions.write(to, VersionsFormat.YAML, toFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(fromFile.toPath());
+		Files.deleteIfExists(toFile.toPath());
+	}
+
+	@Benchmark
+	public VersionsDiff compareMaps() throws IOException {
+		return VersionsDiff.compare(new VersionsDiff.MapSource(from), new VersionsDiff.MapSource(to));
+	}
+
+	@Benchmark
+	public VersionsDiff compareFiles() throws IOException {
+		return VersionsDiff.compare(fromFile, toFile);
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing a versions file, as the create-versions goal streams it, and reading one back, as the
+ * compare-versions goal streams it, in each of the supported formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class VersionsFormatBenchmark {
+
+	@Param({ "YAML", "JSON", "JSON_GZIP", "SMILE" })
+	public VersionsFormat format;
+
+	@Param({ "100", "1000", "10000" })
+	public int entries;
+
+	private Map<String, Map<String, String>> versions;
+
+	private File writeFile;
+
+	private File readFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		versions = BenchmarkVersions.generate(entries, entries);
+		writeFile = File.createTempFile("versions-write-benchmark", ".tmp");
+		readFile = File.createTempFile("versions-read-benchmark", ".tmp");
+		BenchmarkVersions.write(versions, format, readFile);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(writeFile.toPath());
+		Files.deleteIfExists(readFile.toPath());
+	}
+
+	@Benchmark
+	public long writeVersions() throws IOException {
+		BenchmarkVersions.write(versions, format, writeFile);
+		return writeFile.length();
+	}
+
+	@Benchmark
+	public int readVersions() throws IOException {
+		return BenchmarkVersions.count(new VersionsDiff.FileSource(readFile));
+	}
+}
@@ -0,0 +1,70 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.it.Verifier;
+import org.apache.maven.it.util.ResourceExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AggregateMojoTest {
+
+	private static final String PLUGIN = "org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT";
+
+	@Test
+	public void testAggregateVersionsAreWrittenOnceForReactor() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/aggregate-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.executeGoal("clean");
+		verifier.executeGoal("generate-resources");
+
+		String expectedOutput = FileUtils.readFileToString(new File(projectDir, "expected-versions.yml")).trim();
+		String actualOutput = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/aggregate-versions.yml"));
+		// The first line holds the root digest of the versions
+		actualOutput = actualOutput.substring(actualOutput.indexOf('\n') + 1).trim();
+		Assert.assertEquals(expectedOutput, actualOutput);
+		Assert.assertFalse(new File(projectDir, "module-a/target/openmrs-dependency/aggregate-versions.yml").exists());
+		Assert.assertFalse(new File(projectDir, "module-b/target/openmrs-dependency/aggregate-versions.yml").exists());
+	}
+
+	@Test
+	public void testConcurrentResolutionOfAllArtifactsIsTimedOnce() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/aggregate-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-DincludeAllArtifacts=true"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal(PLUGIN + ":aggregate-create-versions");
+		verifier.verifyErrorFreeLog();
+
+		JsonNode metrics = new ObjectMapper().readTree(
+				new File(projectDir, "target/openmrs-dependency/aggregate-create-versions-metrics.json"));
+		Assert.assertEquals(1, metrics.get("phases").get("resolve").get("count").asInt());
+		// test-dependency is resolved for each module, and other-dependency for module-b, but each is listed once
+		Assert.assertEquals(2, metrics.get("counters").get("artifacts").asInt());
+		Assert.assertTrue(metrics.get("peakHeapBytes").asLong() > 0);
+
+		String expectedOutput = FileUtils.readFileToString(new File(projectDir, "expected-versions.yml")).trim();
+		String actualOutput = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/aggregate-versions.yml"));
+		actualOutput = actualOutput.substring(actualOutput.indexOf('\n') + 1).trim();
+		Assert.assertEquals(expectedOutput, actualOutput);
+		verifier.verifyTextInLog("Resolved 2 artifacts across");
+	}
+
+	@Test
+	public void testAggregateHashListsEachArtifactOnce() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/aggregate-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.executeGoal("clean");
+		verifier.executeGoal(PLUGIN + ":aggregate-hash");
+
+		String output = FileUtils.readFileToString(new File(projectDir, "target/aggregate-hashes.yml"));
+		Assert.assertTrue(output.contains("org.openmrs.maven.plugins.test:test-dependency:pom:1.0.0:"));
+		Assert.assertTrue(output.contains("org.openmrs.maven.plugins.test:other-dependency:pom:2.0.0:"));
+		Assert.assertFalse(output.contains("module-a"));
+		Assert.assertEquals(output.indexOf("test-dependency"), output.lastIndexOf("test-dependency"));
+	}
+}
@@ -11,6 +11,8 @@ import org.junit.Test;
 
 public class HashMojoTest {
 
+	private static final String PLUGIN = "org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT";
+
 	@Test
 	public void testDependenciesAreHashed() throws Exception {
 		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/hash-mojo-test");
@@ -23,4 +25,23 @@ public class HashMojoTest {
 		String actualOutput = FileUtils.readFileToString(new File(projectDir, "target/hashes.yml")).trim();
 		Assert.assertEquals(expectedOutput, actualOutput);
 	}
+
+	@Test
+	public void testDependenciesAreHashedInParallelFromFileRepository() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/aggregate-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-DhashThreads=4", "-DuseHashCache=false"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal(PLUGIN + ":hash");
+		verifier.verifyErrorFreeLog();
+
+		String output = FileUtils.readFileToString(new File(projectDir, "module-b/target/hashes.yml"));
+		Assert.assertTrue(output, output.contains(
+				"org.openmrs.maven.plugins.test:test-dependency:pom:1.0.0:compile: \"a99680ab7b2f747eef882aa1d1f427e25f09d6e9\""));
+		Assert.assertTrue(output, output.contains(
+				"org.openmrs.maven.plugins.test:other-dependency:pom:2.0.0:compile: \"3926b8d63dcdb58a25fe490a4636d7a974923bca\""));
+		// module-a is resolved from the reactor, as its pom.xml
+		Assert.assertTrue(output, output.contains(
+				"org.openmrs.maven.plugins.test:module-a:pom:1.0.0:compile: \"ea0d78b993a584e5706b29281a9845cf2c4cbf17\""));
+	}
 }
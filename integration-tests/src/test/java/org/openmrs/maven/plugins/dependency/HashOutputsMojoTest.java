@@ -0,0 +1,42 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.it.Verifier;
+import org.apache.maven.it.util.ResourceExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashOutputsMojoTest {
+
+	private static final String GROUP_ID = "org.openmrs.maven.plugins.test.outputs";
+
+	@Test
+	public void testUnchangedOutputsMatchAfterCleanBuild() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/hash-outputs-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.deleteArtifacts(GROUP_ID);
+		// Resources are extracted in place, so a class added by an earlier run is still there
+		File addedSource = new File(projectDir, "src/main/java/org/openmrs/test/Farewell.java");
+		FileUtils.deleteQuietly(addedSource);
+		File statusFile = new File(projectDir, "target/openmrs-dependency/outputs-status.txt");
+
+		verifier.executeGoals(Arrays.asList("clean", "install"));
+		verifier.verifyErrorFreeLog();
+		Assert.assertEquals("MISSING", FileUtils.readFileToString(statusFile).trim());
+		String installedPath = verifier.getArtifactPath(GROUP_ID, "hash-outputs-test", "1.0.0", "yml", "outputs");
+		Assert.assertEquals(FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/outputs.yml")),
+				FileUtils.readFileToString(new File(installedPath)));
+
+		verifier.executeGoals(Arrays.asList("clean", "install"));
+		verifier.verifyErrorFreeLog();
+		Assert.assertEquals("MATCH", FileUtils.readFileToString(statusFile).trim());
+
+		FileUtils.writeStringToFile(addedSource, "package org.openmrs.test;\n\npublic class Farewell {\n}\n");
+		verifier.executeGoals(Arrays.asList("clean", "install"));
+		verifier.verifyErrorFreeLog();
+		Assert.assertEquals("DIFFER", FileUtils.readFileToString(statusFile).trim());
+	}
+}
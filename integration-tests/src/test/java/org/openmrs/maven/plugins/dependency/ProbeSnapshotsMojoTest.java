@@ -0,0 +1,44 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.it.Verifier;
+import org.apache.maven.it.util.ResourceExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProbeSnapshotsMojoTest {
+
+	@Test
+	public void testNewSnapshotBuildsAreDetected() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/probe-snapshots-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal("org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT:probe-snapshots");
+
+		String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+		Assert.assertEquals("DIFFER", status);
+
+		String expectedDiff = FileUtils.readFileToString(new File(projectDir, "expected-diff.yml")).trim();
+		String actualDiff = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff.yml")).trim();
+		Assert.assertEquals(expectedDiff, actualDiff);
+	}
+
+	@Test
+	public void testSnapshotsRecordedWithoutBuildAreNotProbed() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/probe-snapshots-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N", "-Dprobe.versionsFile=" + new File(projectDir, "versions-unchanged.yml")));
+		verifier.executeGoal("clean");
+		verifier.executeGoal("org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT:probe-snapshots");
+		verifier.verifyErrorFreeLog();
+
+		// local-snapshot was recorded as 3.0-SNAPSHOT, whose build is unknown, so it is not compared with the remote build
+		String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+		Assert.assertEquals("MATCH", status);
+		Assert.assertFalse(new File(projectDir, "target/openmrs-dependency/versions-diff.yml").exists());
+	}
+}
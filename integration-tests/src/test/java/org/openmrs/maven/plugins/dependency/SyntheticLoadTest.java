@@ -0,0 +1,145 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.maven.it.Verifier;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Runs every goal end-to-end against a generated multi-module project and file:// repository, and checks the wall
+ * time and peak heap of each goal, as recorded in its metrics files, against the thresholds in load-thresholds.properties.
+ * The size of the project may be changed with the load.* system properties read by SyntheticProject, in which case
+ * the checked-in thresholds do not apply, and the thresholds are only checked if load.thresholds names a file of them.
+ * The results are written to target/load-test-results.properties.
+ */
+public class SyntheticLoadTest {
+
+	private static final String PLUGIN = "org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT";
+
+	private static final List<String> GOALS = Arrays.asList("create-versions", "attach-versions", "retrieve-versions",
+			"compare-versions", "check-versions", "probe-snapshots", "hash", "hash-outputs", "aggregate-create-versions",
+			"aggregate-hash", "aggregate-compare-versions", "versions-history");
+
+	/**
+	 * Goals that record no metrics, as they only attach a file that is already written
+	 */
+	private static final List<String> UNMEASURED_GOALS = Arrays.asList("attach-versions");
+
+	private static final long BYTES_PER_MB = 1024 * 1024;
+
+	@Test
+	public void testGoalsStayWithinThresholds() throws Exception {
+		SyntheticProject project = SyntheticProject.fromSystemProperties();
+		File projectDir = new File("target/load-test").getAbsoluteFile();
+		project.generate(projectDir);
+
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-DversionsFile=target/openmrs-dependency/versions.yml",
+				"-DrecordHistory=true", "-DhistoryDir=target/history"));
+		List<String> goals = new ArrayList<>();
+		goals.add("package");
+		for (String goal : GOALS) {
+			goals.add(PLUGIN + ":" + goal);
+		}
+		long start = System.nanoTime();
+		verifier.executeGoals(goals);
+		long buildMillis = (System.nanoTime() - start) / 1000000;
+		verifier.verifyErrorFreeLog();
+
+		Properties results = new Properties();
+		results.setProperty("settings", project.toString());
+		results.setProperty("build.millis", Long.toString(buildMillis));
+		for (Map.Entry<String, long[]> e : readMetrics(projectDir, project.getModules()).entrySet()) {
+			results.setProperty(e.getKey() + ".millis", Long.toString(e.getValue()[0]));
+			results.setProperty(e.getKey() + ".peakHeapMb", Long.toString(e.getValue()[1] / BYTES_PER_MB));
+		}
+		try (OutputStream out = new FileOutputStream("target/load-test-results.properties")) {
+			results.store(out, "Results of SyntheticLoadTest");
+		}
+		System.out.println("Load test results for " + project + ": " + new TreeMap<>(results));
+
+		for (String goal : GOALS) {
+			if (!UNMEASURED_GOALS.contains(goal)) {
+				Assert.assertNotNull("No metrics were recorded for " + goal, results.getProperty(goal + ".millis"));
+			}
+		}
+		Properties thresholds = loadThresholds(project);
+		if (thresholds == null) {
+			System.out.println("Not checking thresholds, as they do not apply to " + project);
+			return;
+		}
+		for (String key : thresholds.stringPropertyNames()) {
+			String result = results.getProperty(key);
+			Assert.assertNotNull("No result for threshold " + key, result);
+			long threshold = Long.parseLong(thresholds.getProperty(key).trim());
+			Assert.assertTrue(key + " of " + result + " exceeds threshold of " + threshold,
+					Long.parseLong(result) <= threshold);
+		}
+	}
+
+	/**
+	 * Reads the metrics files written by each goal in each module and the top level project
+	 * @return for each goal, its total wall time in milliseconds across all modules, and its greatest peak heap in bytes
+	 */
+	private Map<String, long[]> readMetrics(File projectDir, int modules) throws IOException {
+		Map<String, long[]> ret = new TreeMap<>();
+		ObjectMapper mapper = new ObjectMapper();
+		for (int m = -1; m < modules; m++) {
+			File dir = new File(projectDir, (m < 0 ? "" : "module-" + m + "/") + "target/openmrs-dependency");
+			File[] files = dir.listFiles();
+			if (files == null) {
+				continue;
+			}
+			for (File file : files) {
+				if (file.getName().endsWith("-metrics.json")) {
+					JsonNode metrics = mapper.readTree(file);
+					String goal = metrics.get("goal").asText();
+					long[] totals = ret.get(goal);
+					if (totals == null) {
+						totals = new long[2];
+						ret.put(goal, totals);
+					}
+					totals[0] += metrics.get("totalMillis").asLong();
+					totals[1] = Math.max(totals[1], metrics.get("peakHeapBytes").asLong());
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the thresholds named by the load.thresholds system property, or the checked-in thresholds if the project
+	 * has the default settings, or otherwise null
+	 */
+	private Properties loadThresholds(SyntheticProject project) throws IOException {
+		Properties ret = new Properties();
+		String thresholdsFile = System.getProperty("load.thresholds");
+		if (thresholdsFile != null) {
+			try (InputStream in = new FileInputStream(thresholdsFile)) {
+				ret.load(in);
+			}
+			return ret;
+		}
+		if (!project.isDefault()) {
+			return null;
+		}
+		try (InputStream in = getClass().getResourceAsStream("/load-thresholds.properties")) {
+			ret.load(in);
+		}
+		return ret;
+	}
+}
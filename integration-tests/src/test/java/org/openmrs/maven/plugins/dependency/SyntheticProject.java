@@ -0,0 +1,196 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates a multi-module project, along with a file:// repository holding every dependency of its modules, so that
+ * goals can be run against projects of any size without network access.  Each module depends on a different slice of
+ * a shared pool of dependencies, so that modules share some of their dependencies, as those of real projects do.
+ * A percentage of the dependencies are SNAPSHOTs, deployed with timestamped versions and snapshot metadata.
+ * The same settings always generate the same project.
+ */
+public class SyntheticProject {
+
+	public static final String GROUP_ID = "org.openmrs.maven.plugins.load";
+
+	private static final String VERSION = "1.0.0-SNAPSHOT";
+
+	private static final String SNAPSHOT_TIMESTAMP = "20240101.120000";
+
+	private int modules = 3;
+
+	private int dependencies = 40;
+
+	private int poolSize = 60;
+
+	private int snapshotPercent = 25;
+
+	private int fileSize = 256 * 1024;
+
+	private int classesPerModule = 20;
+
+	/**
+	 * @return settings read from the load.* system properties, with the defaults for any not set
+	 */
+	public static SyntheticProject fromSystemProperties() {
+		SyntheticProject ret = new SyntheticProject();
+		ret.modules = Integer.getInteger("load.modules", ret.modules);
+		ret.dependencies = Integer.getInteger("load.dependencies", ret.dependencies);
+		ret.poolSize = Integer.getInteger("load.poolSize", Math.max(ret.poolSize, ret.dependencies));
+		ret.snapshotPercent = Integer.getInteger("load.snapshotPercent", ret.snapshotPercent);
+		ret.fileSize = Integer.getInteger("load.fileSize", ret.fileSize);
+		ret.classesPerModule = Integer.getInteger("load.classesPerModule", ret.classesPerModule);
+		return ret;
+	}
+
+	/**
+	 * @return true if these are the default settings, which the checked-in thresholds apply to
+	 */
+	public boolean isDefault() {
+		return toString().equals(new SyntheticProject().toString());
+	}
+
+	/**
+	 * Generates the project and its repository in the passed directory, replacing anything already there
+	 */
+	public void generate(File dir) throws IOException {
+		FileUtils.deleteDirectory(dir);
+		File repo = new File(dir, "repo");
+		Random random = new Random(toString().hashCode());
+		for (int i = 0; i < poolSize; i++) {
+			deployDependency(repo, i, random);
+		}
+		StringBuilder moduleList = new StringBuilder();
+		for (int m = 0; m < modules; m++) {
+			String module = "module-" + m;
+			moduleList.append("        <module>").append(module).append("</module>\n");
+			generateModule(new File(dir, module), m);
+		}
+		FileUtils.writeStringToFile(new File(dir, "pom.xml"), "<project>\n"
+				+ "    <modelVersion>4.0.0</modelVersion>\n"
+				+ "    <groupId>" + GROUP_ID + "</groupId>\n"
+				+ "    <artifactId>load-test</artifactId>\n"
+				+ "    <version>" + VERSION + "</version>\n"
+				+ "    <packaging>pom</packaging>\n"
+				+ "    <modules>\n" + moduleList + "    </modules>\n"
+				+ "    <repositories>\n"
+				+ "        <repository>\n"
+				+ "            <id>load-repo</id>\n"
+				+ "            <url>file://${maven.multiModuleProjectDirectory}/repo</url>\n"
+				+ "        </repository>\n"
+				+ "    </repositories>\n"
+				+ "</project>\n", "UTF-8");
+	}
+
+	/**
+	 * Each module depends on the dependencies of the pool starting at an offset of its index, wrapping around
+	 */
+	private void generateModule(File dir, int index) throws IOException {
+		StringBuilder dependencyList = new StringBuilder();
+		for (int d = 0; d < dependencies; d++) {
+			int i = (index * (poolSize / Math.max(1, modules)) + d) % poolSize;
+			dependencyList.append("        <dependency>\n")
+					.append("            <groupId>").append(getDependencyGroupId(i)).append("</groupId>\n")
+					.append("            <artifactId>").append(getDependencyArtifactId(i)).append("</artifactId>\n")
+					.append("            <version>").append(getDependencyVersion(i)).append("</version>\n")
+					.append("        </dependency>\n");
+		}
+		FileUtils.writeStringToFile(new File(dir, "pom.xml"), "<project>\n"
+				+ "    <modelVersion>4.0.0</modelVersion>\n"
+				+ "    <parent>\n"
+				+ "        <groupId>" + GROUP_ID + "</groupId>\n"
+				+ "        <artifactId>load-test</artifactId>\n"
+				+ "        <version>" + VERSION + "</version>\n"
+				+ "    </parent>\n"
+				+ "    <artifactId>module-" + index + "</artifactId>\n"
+				+ "    <properties>\n"
+				+ "        <maven.compiler.source>8</maven.compiler.source>\n"
+				+ "        <maven.compiler.target>8</maven.compiler.target>\n"
+				+ "    </properties>\n"
+				+ "    <dependencies>\n" + dependencyList + "    </dependencies>\n"
+				+ "</project>\n", "UTF-8");
+		for (int c = 0; c < classesPerModule; c++) {
+			String pkg = "org.openmrs.load.module" + index + ".pkg" + (c % 4);
+			File source = new File(dir, "src/main/java/" + pkg.replace('.', '/') + "/Class" + c + ".java");
+			FileUtils.writeStringToFile(source, "package " + pkg + ";\n\npublic class Class" + c + " {\n"
+					+ "    public int value() {\n        return " + c + ";\n    }\n}\n", "UTF-8");
+		}
+	}
+
+	/**
+	 * Deploys a pom and a jar of fileSize random bytes for the passed dependency of the pool.  SNAPSHOTs are deployed
+	 * with a timestamped version, and the snapshot metadata that resolves their version to it
+	 */
+	private void deployDependency(File repo, int i, Random random) throws IOException {
+		String groupId = getDependencyGroupId(i);
+		String artifactId = getDependencyArtifactId(i);
+		String version = getDependencyVersion(i);
+		File versionDir = new File(repo, groupId.replace('.', '/') + "/" + artifactId + "/" + version);
+		String fileVersion = version;
+		if (version.endsWith("-SNAPSHOT")) {
+			fileVersion = version.substring(0, version.length() - "SNAPSHOT".length()) + SNAPSHOT_TIMESTAMP + "-1";
+			FileUtils.writeStringToFile(new File(versionDir, "maven-metadata.xml"), "<metadata>\n"
+					+ "  <groupId>" + groupId + "</groupId>\n"
+					+ "  <artifactId>" + artifactId + "</artifactId>\n"
+					+ "  <version>" + version + "</version>\n"
+					+ "  <versioning>\n"
+					+ "    <snapshot>\n"
+					+ "      <timestamp>" + SNAPSHOT_TIMESTAMP + "</timestamp>\n"
+					+ "      <buildNumber>1</buildNumber>\n"
+					+ "    </snapshot>\n"
+					+ "    <lastUpdated>" + SNAPSHOT_TIMESTAMP.replace(".", "") + "</lastUpdated>\n"
+					+ "    <snapshotVersions>\n"
+					+ "      <snapshotVersion><extension>jar</extension><value>" + fileVersion + "</value></snapshotVersion>\n"
+					+ "      <snapshotVersion><extension>pom</extension><value>" + fileVersion + "</value></snapshotVersion>\n"
+					+ "    </snapshotVersions>\n"
+					+ "  </versioning>\n"
+					+ "</metadata>\n", "UTF-8");
+		}
+		String baseName = artifactId + "-" + fileVersion;
+		FileUtils.writeStringToFile(new File(versionDir, baseName + ".pom"), "<project>\n"
+				+ "    <modelVersion>4.0.0</modelVersion>\n"
+				+ "    <groupId>" + groupId + "</groupId>\n"
+				+ "    <artifactId>" + artifactId + "</artifactId>\n"
+				+ "    <version>" + version + "</version>\n"
+				+ "</project>\n", "UTF-8");
+		byte[] bytes = new byte[fileSize];
+		random.nextBytes(bytes);
+		try (OutputStream out = new FileOutputStream(new File(versionDir, baseName + ".jar"));
+				JarOutputStream jar = new JarOutputStream(out)) {
+			jar.putNextEntry(new ZipEntry("data.bin"));
+			jar.write(bytes);
+			jar.closeEntry();
+		}
+	}
+
+	private String getDependencyGroupId(int i) {
+		return GROUP_ID + ".group" + (i / 10);
+	}
+
+	private String getDependencyArtifactId(int i) {
+		return "dependency-" + i;
+	}
+
+	private String getDependencyVersion(int i) {
+		boolean snapshot = (i * 100 / poolSize) % 100 < snapshotPercent;
+		return (snapshot ? "1." + i + "-SNAPSHOT" : "1." + i + ".0");
+	}
+
+	public int getModules() {
+		return modules;
+	}
+
+	@Override
+	public String toString() {
+		return "modules=" + modules + ", dependencies=" + dependencies + ", poolSize=" + poolSize + ", snapshotPercent="
+				+ snapshotPercent + ", fileSize=" + fileSize + ", classesPerModule=" + classesPerModule;
+	}
+}
@@ -0,0 +1,188 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.maven.it.Verifier;
+import org.apache.maven.it.util.ResourceExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class VersionsMojoTest {
+
+	private static final String PLUGIN = "org.openmrs.maven.plugins:openmrs-dependency-maven-plugin:1.1.0-SNAPSHOT";
+
+	@Test
+	public void testVersionsAreRetrievedFromFileRepository() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal(PLUGIN + ":retrieve-versions");
+
+		String repoPath = "repo/org/openmrs/maven/plugins/test/versions-mojo-test/1.0.0/versions-mojo-test-1.0.0-versions.yml";
+		String expectedOutput = FileUtils.readFileToString(new File(projectDir, repoPath)).trim();
+		String actualOutput = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-retrieved.yml")).trim();
+		Assert.assertEquals(expectedOutput, actualOutput);
+	}
+
+	@Test
+	public void testCheckVersionsMatchesRetrievedVersions() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal("generate-resources");
+
+		String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+		Assert.assertEquals("MATCH", status);
+		Assert.assertFalse(new File(projectDir, "target/openmrs-dependency/versions-retrieved.yml").exists());
+	}
+
+	@Test
+	public void testExcludedArtifactsAreLeftOutOfVersions() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N", "-Dexcludes=*:TEST-*"));
+		verifier.executeGoal("clean");
+		verifier.executeGoal("generate-resources");
+
+		String versions = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions.yml"));
+		Assert.assertFalse(versions.contains("test-dependency"));
+		String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+		Assert.assertEquals("MATCH", status);
+	}
+
+	@Test
+	public void testUnchangedVersionsAndHashesAreNotRewritten() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N"));
+		verifier.executeGoal("clean");
+		verifier.executeGoals(Arrays.asList(PLUGIN + ":create-versions", PLUGIN + ":hash"));
+		// Otherwise each execution cleans the project first
+		verifier.setAutoclean(false);
+		File versionsFile = new File(projectDir, "target/openmrs-dependency/versions.yml");
+		File hashesFile = new File(projectDir, "target/hashes.yml");
+		long versionsModified = versionsFile.lastModified();
+		long hashesModified = hashesFile.lastModified();
+
+		verifier.executeGoals(Arrays.asList(PLUGIN + ":create-versions", PLUGIN + ":hash"));
+		verifier.verifyErrorFreeLog();
+		verifier.verifyTextInLog(versionsFile + " is up to date");
+		verifier.verifyTextInLog(hashesFile + " is up to date");
+		Assert.assertEquals(versionsModified, versionsFile.lastModified());
+		Assert.assertEquals(hashesModified, hashesFile.lastModified());
+
+		verifier.setCliOptions(Arrays.asList("-N", "-Dexcludes=*:test-dependency"));
+		verifier.executeGoal(PLUGIN + ":create-versions");
+		Assert.assertFalse(FileUtils.readFileToString(versionsFile).contains("test-dependency"));
+	}
+
+	@Test
+	public void testCompactVersionsFilesAreComparedWithYaml() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		File yamlFile = new File(projectDir,
+				"repo/org/openmrs/maven/plugins/test/versions-mojo-test/1.0.0/versions-mojo-test-1.0.0-versions.yml");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N"));
+		verifier.executeGoal("clean");
+		// Keep the file written in each format, to compare them with each other
+		verifier.setAutoclean(false);
+		String[][] types = { { "json", "{" }, { "json.gz", "\u001f\u008b" }, { "smile", ":)\n" } };
+		for (String[] type : types) {
+			verifier.setCliOptions(Arrays.asList("-N", "-DversionsType=" + type[0],
+					"-DcompareFrom=" + yamlFile.getAbsolutePath()));
+			verifier.executeGoals(Arrays.asList(PLUGIN + ":create-versions", PLUGIN + ":compare-versions"));
+			verifier.verifyErrorFreeLog();
+
+			File versionsFile = new File(projectDir, "target/openmrs-dependency/versions." + type[0]);
+			Assert.assertEquals(type[0], type[1], readStart(versionsFile, type[1].length()));
+			String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+			Assert.assertEquals(type[0], "MATCH", status);
+		}
+
+		// Files in different compact formats are also compared with each other
+		verifier.setCliOptions(Arrays.asList("-N",
+				"-DcompareFrom=" + new File(projectDir, "target/openmrs-dependency/versions.json.gz").getAbsolutePath(),
+				"-DcompareTo=" + new File(projectDir, "target/openmrs-dependency/versions.smile").getAbsolutePath()));
+		verifier.executeGoal(PLUGIN + ":compare-versions");
+		verifier.verifyErrorFreeLog();
+		String status = FileUtils.readFileToString(new File(projectDir, "target/openmrs-dependency/versions-diff-status.txt")).trim();
+		Assert.assertEquals("MATCH", status);
+	}
+
+	@Test
+	public void testDifferingGroupsAreFoundFromRetrievedDigest() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-digest-test");
+		File deployDir = new File(projectDir, "target/deployed");
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N", "-DaltDeploymentRepository=test::" + deployDir.toURI()));
+		verifier.executeGoals(Arrays.asList(PLUGIN + ":retrieve-versions", PLUGIN + ":create-versions",
+				PLUGIN + ":compare-versions", PLUGIN + ":attach-versions",
+				"org.apache.maven.plugins:maven-deploy-plugin:3.1.2:deploy"));
+		verifier.verifyErrorFreeLog();
+
+		String outputPath = "target/openmrs-dependency/";
+		Assert.assertTrue(new File(projectDir, outputPath + "versions-retrieved-digest.yml").exists());
+		verifier.verifyTextInLog("Groups with differing versions: [org.openmrs.maven.plugins.test]");
+		String status = FileUtils.readFileToString(new File(projectDir, outputPath + "versions-diff-status.txt")).trim();
+		Assert.assertEquals("DIFFER", status);
+
+		String deployedPath = "org/openmrs/maven/plugins/test/versions-digest-test/1.0.0/versions-digest-test-1.0.0-versions-digest.yml";
+		Assert.assertEquals(FileUtils.readFileToString(new File(projectDir, outputPath + "versions-digest.yml")),
+				FileUtils.readFileToString(new File(deployDir, deployedPath)));
+
+		verifier.executeGoal(PLUGIN + ":check-versions");
+		verifier.verifyErrorFreeLog();
+		verifier.verifyTextInLog("Groups with differing versions: [org.openmrs.maven.plugins.test]");
+	}
+
+	@Test
+	public void testVersionsHistoryFindsChangesOfArtifact() throws Exception {
+		File projectDir = ResourceExtractor.simpleExtractResources(getClass(), "/versions-mojo-test");
+		File historyDir = new File(projectDir, "history");
+		FileUtils.deleteDirectory(historyDir);
+		String historyOption = "-DhistoryDir=" + historyDir.getAbsolutePath();
+		Verifier verifier = new Verifier(projectDir.getAbsolutePath());
+		verifier.setCliOptions(Arrays.asList("-N", "-DrecordHistory=true", historyOption));
+		verifier.executeGoal("clean");
+		verifier.executeGoal(PLUGIN + ":create-versions");
+		verifier.setCliOptions(Arrays.asList("-N", "-DrecordHistory=true", historyOption, "-Dexcludes=*:test-dependency"));
+		verifier.executeGoal(PLUGIN + ":create-versions");
+		verifier.executeGoal(PLUGIN + ":create-versions");
+		verifier.setCliOptions(Arrays.asList("-N", historyOption, "-Dincludes=*:test-dependency"));
+		verifier.executeGoal(PLUGIN + ":versions-history");
+		verifier.verifyErrorFreeLog();
+
+		JsonNode changes = new ObjectMapper(new YAMLFactory()).readTree(
+				new File(projectDir, "target/openmrs-dependency/versions-history.yml"));
+		Assert.assertEquals(2, changes.size());
+		Assert.assertEquals(2, changes.get(0).get("snapshot").asInt());
+		Assert.assertEquals("1.0.0", changes.get(0).get("fromVersion").asText());
+		Assert.assertFalse(changes.get(0).has("toVersion"));
+		Assert.assertEquals(1, changes.get(1).get("snapshot").asInt());
+		Assert.assertEquals("test-dependency", changes.get(1).get("artifactId").asText());
+		Assert.assertEquals("1.0.0", changes.get(1).get("toVersion").asText());
+		Assert.assertEquals("1.0.0", changes.get(1).get("label").asText());
+	}
+
+	/**
+	 * @return the first bytes of the passed file, each as a char
+	 */
+	private String readStart(File file, int length) throws Exception {
+		StringBuilder ret = new StringBuilder();
+		try (InputStream in = new FileInputStream(file)) {
+			for (int i = 0; i < length; i++) {
+				ret.append((char) in.read());
+			}
+		}
+		return ret.toString();
+	}
+}
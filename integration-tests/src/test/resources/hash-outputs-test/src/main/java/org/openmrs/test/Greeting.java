@@ -0,0 +1,8 @@
+package org.openmrs.test;
+
+public class Greeting {
+
+	public String getGreeting() {
+		return "Hello";
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * This Mojo compares the aggregate versions file written by aggregate-create-versions with the one last installed
+ * or deployed, and writes a single status and diff for the whole reactor.
+ * It executes only in the last project of the reactor, and unless compareFrom is specified, retrieves the previous
+ * aggregate versions file directly from the Maven repository.
+ */
+@Mojo(name = "aggregate-compare-versions",
+		defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+public class AggregateCompareVersionsMojo extends CompareVersionsMojo {
+
+	/**
+	 * The directory in which the aggregate versions file is found, and the status and diff are written
+	 */
+	@Parameter(property = "aggregateOutputDir", defaultValue = "${session.topLevelProject.build.directory}/openmrs-dependency")
+	File aggregateOutputDir;
+
+	/**
+	 * The classifier of the aggregate versions file, used in place of the versionsClassifier
+	 */
+	@Parameter(property = "aggregateVersionsClassifier", defaultValue = "aggregate-versions")
+	String aggregateVersionsClassifier;
+
+	File retrievedFile;
+
+	File retrievedDigestFile;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	@Override
+	protected void doExecute() throws MojoExecutionException {
+		if (!new ReactorAggregator(mavenSession, 1).isLastProject(mavenProject)) {
+			getLog().info("Skipping until the last project of the reactor");
+			return;
+		}
+		outputDir = aggregateOutputDir;
+		versionsClassifier = aggregateVersionsClassifier;
+		if (compareFrom == null) {
+			retrievedFile = retrieveVersionsArtifact();
+			if (retrievedFile == null) {
+				compareFrom = getRetrievedVersionsOutputFile();
+			}
+			else {
+				compareFrom = retrievedFile;
+				retrievedDigestFile = retrieveVersionsDigestArtifact();
+			}
+		}
+		super.doExecute();
+	}
+
+	/**
+	 * @return the digest retrieved from the Maven repository if compareFrom was retrieved from there, as it cannot be
+	 * assumed that the file found alongside it in the local repository belongs to the same build
+	 */
+	@Override
+	protected File getCompareFromDigestFile() {
+		if (retrievedFile != null && retrievedFile.equals(compareFrom)) {
+			return retrievedDigestFile;
+		}
+		return super.getCompareFromDigestFile();
+	}
+}
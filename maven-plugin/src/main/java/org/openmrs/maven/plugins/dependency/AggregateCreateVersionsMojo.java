@@ -0,0 +1,151 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * This Mojo writes a single versions file for the whole reactor, listing the dependencies of every module.
+ * It executes only in the last project of the reactor.  Dependencies shared by several modules have their versions
+ * resolved only once, and dependencies on other modules of the reactor are left out.  If modules depend on different
+ * versions of the same artifact, a warning is logged, and the version used by the module built last is recorded.
+ */
+@Mojo(name = "aggregate-create-versions",
+		defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+public class AggregateCreateVersionsMojo extends CreateVersionsMojo {
+
+	/**
+	 * The directory in which the aggregate versions file is written
+	 */
+	@Parameter(property = "aggregateOutputDir", defaultValue = "${session.topLevelProject.build.directory}/openmrs-dependency")
+	File aggregateOutputDir;
+
+	/**
+	 * The classifier of the aggregate versions file, used in place of the versionsClassifier
+	 */
+	@Parameter(property = "aggregateVersionsClassifier", defaultValue = "aggregate-versions")
+	String aggregateVersionsClassifier;
+
+	/**
+	 * The number of modules or dependencies to resolve concurrently, or 0 for one per available processor
+	 */
+	@Parameter(property = "aggregateThreads", defaultValue = "0")
+	int aggregateThreads;
+
+	/**
+	 * If true, the aggregate versions file is attached to the last project of the reactor as an artifact
+	 */
+	@Parameter(property = "attach", defaultValue = "true")
+	boolean attach;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	@Override
+	protected void doExecute() throws MojoExecutionException {
+		ReactorAggregator aggregator = new ReactorAggregator(mavenSession, aggregateThreads);
+		if (!aggregator.isLastProject(mavenProject)) {
+			getLog().info("Skipping until the last project of the reactor");
+			return;
+		}
+		outputDir = aggregateOutputDir;
+		versionsClassifier = aggregateVersionsClassifier;
+		List<Artifact> artifacts = resolveReactorArtifacts(aggregator);
+		warnOfConflictingVersions(artifacts);
+		writeVersions(artifacts);
+		if (attach) {
+			attachVersionsArtifact(getVersionsOutputFile());
+		}
+	}
+
+	/**
+	 * @return the versioned artifacts of every module of the reactor, resolving each unique dependency only once
+	 */
+	protected List<Artifact> resolveReactorArtifacts(ReactorAggregator aggregator) throws MojoExecutionException {
+		List<Artifact> ret = new ArrayList<>();
+		ArtifactFilter filter = getArtifactFilter();
+		// Projects and dependencies are resolved concurrently, so the resolution is timed once as a whole
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.RESOLVE)) {
+			if (includeAllArtifacts) {
+				final Set<String> projectKeys = aggregator.getProjectKeys();
+				List<List<Artifact>> projectArtifacts = aggregator.forEach(aggregator.getProjects(),
+						new ReactorAggregator.Task<MavenProject, List<Artifact>>() {
+							@Override
+							public List<Artifact> run(MavenProject project) throws Exception {
+								return doResolveVersionedArtifacts(project, true, scopes, projectKeys);
+							}
+						});
+				// Modules resolve the same dependencies in their own graphs, so each version is kept only once
+				Map<String, Artifact> uniqueArtifacts = new LinkedHashMap<>();
+				for (List<Artifact> artifacts : projectArtifacts) {
+					for (Artifact a : artifacts) {
+						String key = a.getGroupId() + ":" + a.getArtifactId() + ":" + a.getVersion();
+						if (!uniqueArtifacts.containsKey(key)) {
+							uniqueArtifacts.put(key, a);
+						}
+					}
+				}
+				ret.addAll(uniqueArtifacts.values());
+			}
+			else {
+				List<Artifact> artifacts = aggregator.forEach(aggregator.getUniqueDependencies(scopes),
+						new ReactorAggregator.Task<ReactorAggregator.ProjectDependency, Artifact>() {
+							@Override
+							public Artifact run(ReactorAggregator.ProjectDependency d) throws Exception {
+								return resolveVersion(d.getProject(), d.getDependency());
+							}
+						});
+				for (Artifact a : artifacts) {
+					if (filter.accept(a)) {
+						ret.add(a);
+					}
+				}
+			}
+		}
+		metrics.add(ExecutionMetrics.ARTIFACTS, ret.size());
+		getLog().info("Resolved " + ret.size() + " artifacts across " + aggregator.getProjects().size() + " projects");
+		return ret;
+	}
+
+	/**
+	 * Logs a warning for each artifact whose version differs between modules
+	 */
+	private void warnOfConflictingVersions(List<Artifact> artifacts) {
+		Map<String, Set<String>> versions = new TreeMap<>();
+		for (Artifact a : artifacts) {
+			String key = a.getGroupId() + ":" + a.getArtifactId();
+			Set<String> artifactVersions = versions.get(key);
+			if (artifactVersions == null) {
+				artifactVersions = new TreeSet<>();
+				versions.put(key, artifactVersions);
+			}
+			artifactVersions.add(a.getVersion());
+		}
+		for (Map.Entry<String, Set<String>> e : versions.entrySet()) {
+			if (e.getValue().size() > 1) {
+				getLog().warn("Modules depend on different versions of " + e.getKey() + ": " + e.getValue());
+			}
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+/**
+ * This Mojo writes a single file for the whole reactor containing the digest of every dependency of every module.
+ * It executes only in the last project of the reactor.  Dependencies shared by several modules are resolved and
+ * hashed only once, and dependencies on other modules of the reactor are left out.  As the same artifact may be used
+ * in different scopes by different modules, artifacts are listed without their scope.
+ * All configuration of the hash goal applies, other than outputFile, which is replaced by aggregateOutputFile.
+ */
+@Mojo(name = "aggregate-hash")
+public class AggregateHashMojo extends HashMojo {
+
+	/**
+	 * The directory in which the fingerprint of the inputs, and by default the hash cache, are written
+	 */
+	@Parameter(property = "aggregateOutputDir", defaultValue = "${session.topLevelProject.build.directory}/openmrs-dependency")
+	File aggregateOutputDir;
+
+	@Parameter(property = "aggregateOutputFile", defaultValue = "${session.topLevelProject.build.directory}/aggregate-hashes.yml")
+	File aggregateOutputFile;
+
+	/**
+	 * The number of dependencies to resolve concurrently, or 0 for one per available processor
+	 */
+	@Parameter(property = "aggregateThreads", defaultValue = "0")
+	int aggregateThreads;
+
+	private ReactorAggregator aggregator;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	@Override
+	protected void doExecute() throws MojoExecutionException {
+		aggregator = new ReactorAggregator(mavenSession, aggregateThreads);
+		if (!aggregator.isLastProject(mavenProject)) {
+			getLog().info("Skipping until the last project of the reactor");
+			return;
+		}
+		outputDir = aggregateOutputDir;
+		outputFile = aggregateOutputFile;
+		super.doExecute();
+	}
+
+	/**
+	 * @return the file of each unique dependency of every module of the reactor, leaving out any excluded
+	 */
+	@Override
+	protected Map<Artifact, File> getArtifactFiles() throws MojoExecutionException {
+		final ArtifactFilter filter = getArtifactFilter();
+		List<Artifact> artifacts = aggregator.forEach(aggregator.getUniqueDependencies(null),
+				new ReactorAggregator.Task<ReactorAggregator.ProjectDependency, Artifact>() {
+					@Override
+					public Artifact run(ReactorAggregator.ProjectDependency d) throws Exception {
+						Artifact versioned = resolveVersion(d.getProject(), d.getDependency());
+						if (!filter.accept(versioned)) {
+							return null;
+						}
+						ArtifactRequest request = new ArtifactRequest(RepositoryUtils.toArtifact(versioned),
+								d.getProject().getRemoteProjectRepositories(), null);
+						ArtifactResult result = repositorySystem.resolveArtifact(mavenSession.getRepositorySession(), request);
+						return RepositoryUtils.toArtifact(result.getArtifact());
+					}
+				});
+		Map<Artifact, File> ret = new LinkedHashMap<>();
+		for (Artifact a : artifacts) {
+			if (a != null) {
+				ret.put(a, a.getFile());
+			}
+		}
+		getLog().info("Resolved " + ret.size() + " artifacts across " + aggregator.getProjects().size() + " projects");
+		return ret;
+	}
+}
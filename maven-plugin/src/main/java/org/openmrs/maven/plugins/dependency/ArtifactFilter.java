@@ -0,0 +1,249 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Filters artifacts by include and exclude patterns of the form groupId:artifactId:version:classifier, where any part
+ * may contain * wildcards, and any trailing parts may be left out to match any value.  Matching ignores case.
+ * An artifact is accepted if it matches any include pattern, or if there are none, and matches no exclude pattern.
+ * The patterns are compiled once into an index by groupId and artifactId, so that only the patterns that could match
+ * an artifact are tested against it, however many patterns there are.
+ */
+public class ArtifactFilter {
+
+	private final PatternIndex includes = new PatternIndex();
+
+	private final PatternIndex excludes = new PatternIndex();
+
+	/**
+	 * @param includes the patterns of artifacts to include, or null or empty to include all artifacts
+	 * @param excludes the patterns of artifacts to exclude, or null or empty to exclude none
+	 * @throws IllegalArgumentException if any pattern has more than four parts
+	 */
+	public ArtifactFilter(Collection<String> includes, Collection<String> excludes) {
+		if (includes != null) {
+			for (String pattern : includes) {
+				this.includes.add(new ArtifactPattern(pattern));
+			}
+		}
+		if (excludes != null) {
+			for (String pattern : excludes) {
+				this.excludes.add(new ArtifactPattern(pattern));
+			}
+		}
+	}
+
+	/**
+	 * @return true if there are no patterns, and so every artifact is accepted
+	 */
+	public boolean isEmpty() {
+		return includes.isEmpty() && excludes.isEmpty();
+	}
+
+	/**
+	 * @return true if the passed artifact is accepted, matching versions against both the version and base version
+	 */
+	public boolean accept(Artifact a) {
+		if (isEmpty()) {
+			return true;
+		}
+		return accept(a.getGroupId(), a.getArtifactId(), a.getVersion(), a.getBaseVersion(), a.getClassifier());
+	}
+
+	/**
+	 * @return true if an artifact with the passed coordinates is accepted
+	 */
+	public boolean accept(String groupId, String artifactId, String version, String classifier) {
+		return accept(groupId, artifactId, version, version, classifier);
+	}
+
+	/**
+	 * An artifact matches a pattern if either its version or base version matches, so that a pattern for a SNAPSHOT
+	 * version matches each timestamped build of it
+	 */
+	private boolean accept(String groupId, String artifactId, String version, String baseVersion, String classifier) {
+		String[] values = { lowerCase(groupId), lowerCase(artifactId), lowerCase(version), lowerCase(classifier) };
+		String[] baseValues = values;
+		if (baseVersion != null && !baseVersion.equals(version)) {
+			baseValues = new String[] { values[0], values[1], lowerCase(baseVersion), values[3] };
+		}
+		boolean included = includes.isEmpty() || includes.matches(values) || includes.matches(baseValues);
+		return included && !excludes.matches(values) && !excludes.matches(baseValues);
+	}
+
+	/**
+	 * @return a source of only those entries of the passed source that are accepted, matching without a classifier
+	 */
+	public VersionsDiff.Source filter(final VersionsDiff.Source source) {
+		if (isEmpty()) {
+			return source;
+		}
+		return new VersionsDiff.Source() {
+			@Override
+			public VersionsDiff.EntryIterator open() throws IOException {
+				final VersionsDiff.EntryIterator entries = source.open();
+				return new VersionsDiff.EntryIterator() {
+					@Override
+					public VersionsDiff.Entry next() throws IOException {
+						for (VersionsDiff.Entry e = entries.next(); e != null; e = entries.next()) {
+							if (accept(e.groupId, e.artifactId, e.version, VersionsDiff.getBaseVersion(e.version), null)) {
+								return e;
+							}
+						}
+						return null;
+					}
+
+					@Override
+					public void close() throws IOException {
+						entries.close();
+					}
+				};
+			}
+		};
+	}
+
+	private static String lowerCase(String s) {
+		return (s == null ? "" : s.toLowerCase(Locale.ENGLISH));
+	}
+
+	/**
+	 * Patterns indexed by their groupId and artifactId where these have no wildcards
+	 */
+	private static class PatternIndex {
+
+		private final Map<String, Map<String, List<ArtifactPattern>>> byGroupAndArtifact = new HashMap<>();
+
+		private final Map<String, List<ArtifactPattern>> byGroup = new HashMap<>();
+
+		private final List<ArtifactPattern> others = new ArrayList<>();
+
+		private boolean empty = true;
+
+		void add(ArtifactPattern pattern) {
+			empty = false;
+			String groupId = pattern.getExact(0);
+			String artifactId = pattern.getExact(1);
+			if (groupId == null) {
+				others.add(pattern);
+			}
+			else if (artifactId == null) {
+				getList(byGroup, groupId).add(pattern);
+			}
+			else {
+				Map<String, List<ArtifactPattern>> artifacts = byGroupAndArtifact.get(groupId);
+				if (artifacts == null) {
+					artifacts = new HashMap<>();
+					byGroupAndArtifact.put(groupId, artifacts);
+				}
+				getList(artifacts, artifactId).add(pattern);
+			}
+		}
+
+		boolean isEmpty() {
+			return empty;
+		}
+
+		boolean matches(String[] values) {
+			Map<String, List<ArtifactPattern>> artifacts = byGroupAndArtifact.get(values[0]);
+			return (artifacts != null && matchesAny(artifacts.get(values[1]), values))
+					|| matchesAny(byGroup.get(values[0]), values)
+					|| matchesAny(others, values);
+		}
+
+		private boolean matchesAny(List<ArtifactPattern> patterns, String[] values) {
+			if (patterns != null) {
+				for (ArtifactPattern pattern : patterns) {
+					if (pattern.matches(values)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private List<ArtifactPattern> getList(Map<String, List<ArtifactPattern>> map, String key) {
+			List<ArtifactPattern> ret = map.get(key);
+			if (ret == null) {
+				ret = new ArrayList<>();
+				map.put(key, ret);
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * A single compiled groupId:artifactId:version:classifier pattern
+	 */
+	private static class ArtifactPattern {
+
+		private static final int PARTS = 4;
+
+		/**
+		 * For each part, null if it matches anything, otherwise the exact lower case value or a wildcard Pattern
+		 */
+		private final Object[] parts = new Object[PARTS];
+
+		ArtifactPattern(String pattern) {
+			String[] split = pattern.trim().split(":", -1);
+			if (split.length > PARTS) {
+				throw new IllegalArgumentException("Invalid artifact pattern " + pattern
+						+ ", expected groupId:artifactId:version:classifier");
+			}
+			for (int i = 0; i < split.length; i++) {
+				String part = lowerCase(split[i].trim());
+				if (part.isEmpty() || part.equals("*")) {
+					parts[i] = null;
+				}
+				else if (part.contains("*")) {
+					StringBuilder regex = new StringBuilder();
+					String[] literals = part.split("\\*", -1);
+					for (int j = 0; j < literals.length; j++) {
+						regex.append(j > 0 ? ".*" : "").append(Pattern.quote(literals[j]));
+					}
+					parts[i] = Pattern.compile(regex.toString());
+				}
+				else {
+					parts[i] = part;
+				}
+			}
+		}
+
+		/**
+		 * @return the exact value the passed part must have, or null if it has wildcards
+		 */
+		String getExact(int part) {
+			return (parts[part] instanceof String ? (String) parts[part] : null);
+		}
+
+		boolean matches(String[] values) {
+			for (int i = 0; i < PARTS; i++) {
+				Object part = parts[i];
+				if (part instanceof String && !part.equals(values[i])) {
+					return false;
+				}
+				if (part instanceof Pattern && !((Pattern) part).matcher(values[i]).matches()) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
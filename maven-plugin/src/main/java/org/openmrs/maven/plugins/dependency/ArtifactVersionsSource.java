@@ -0,0 +1,66 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * A source of the versions of a collection of artifacts, sorted by groupId and artifactId.
+ * Entries are created from the artifacts as they are iterated, rather than copied into maps of versions, and where
+ * more than one artifact has the same groupId and artifactId, the last of these in the collection is used.
+ */
+public class ArtifactVersionsSource implements VersionsDiff.Source {
+
+	private static final Comparator<Artifact> GROUP_AND_ARTIFACT_ID = new Comparator<Artifact>() {
+		@Override
+		public int compare(Artifact a1, Artifact a2) {
+			int ret = a1.getGroupId().compareTo(a2.getGroupId());
+			return (ret != 0 ? ret : a1.getArtifactId().compareTo(a2.getArtifactId()));
+		}
+	};
+
+	private final List<Artifact> artifacts;
+
+	public ArtifactVersionsSource(Collection<Artifact> artifacts) {
+		this.artifacts = new ArrayList<>(artifacts);
+		// The sort is stable, so artifacts with the same groupId and artifactId stay in the order they were passed
+		Collections.sort(this.artifacts, GROUP_AND_ARTIFACT_ID);
+	}
+
+	@Override
+	public VersionsDiff.EntryIterator open() {
+		return new VersionsDiff.EntryIterator() {
+
+			private int index = 0;
+
+			@Override
+			public VersionsDiff.Entry next() {
+				if (index >= artifacts.size()) {
+					return null;
+				}
+				Artifact a = artifacts.get(index++);
+				while (index < artifacts.size() && GROUP_AND_ARTIFACT_ID.compare(a, artifacts.get(index)) == 0) {
+					a = artifacts.get(index++);
+				}
+				return new VersionsDiff.Entry(a.getGroupId(), a.getArtifactId(), a.getVersion());
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+}
@@ -9,12 +9,6 @@
  */
 package org.openmrs.maven.plugins.dependency;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.configuration;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.element;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executeMojo;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.goal;
-import static org.twdata.maven.mojoexecutor.MojoExecutor.plugin;
-
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -29,20 +23,10 @@ public class AttachVersionsMojo extends DependencyMojo {
 	/**
 	 * @throws MojoExecutionException if an error occurs
 	 */
-	public void execute() throws MojoExecutionException {
-		executeMojo(
-				plugin("org.codehaus.mojo", "build-helper-maven-plugin", "3.1.0"),
-				goal("attach-artifact"),
-				configuration(
-						element("artifacts",
-								element("artifact",
-										element("file", getVersionsOutputFile().getAbsolutePath()),
-										element("classifier", versionsClassifier),
-										element("type", versionsType)
-								)
-						)
-				),
-				getMavenExecutionEnvironment()
-		);
+	protected void doExecute() throws MojoExecutionException {
+		if (!getVersionsOutputFile().exists()) {
+			throw new MojoExecutionException("Unable to attach " + getVersionsOutputFile() + " as it does not exist");
+		}
+		attachVersionsArtifact(getVersionsOutputFile());
 	}
 }
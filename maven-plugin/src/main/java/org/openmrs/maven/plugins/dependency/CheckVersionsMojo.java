@@ -0,0 +1,90 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * This Mojo combines the retrieve-versions, create-versions, compare-versions, and attach-versions goals into a
+ * single goal.  The versions of the current dependencies are compared in memory with the latest versions artifact
+ * retrieved from the Maven repository, without writing and re-reading intermediate files.
+ * The only files written are the versions file to attach, and the diff status and diff contents files.
+ */
+@Mojo(name = "check-versions",
+		defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+public class CheckVersionsMojo extends DependencyMojo {
+
+	@Parameter(property = "includeAllArtifacts", defaultValue = "false")
+	boolean includeAllArtifacts;
+
+	/**
+	 * The scopes of the dependencies to include.  If not specified, dependencies in all scopes are included
+	 */
+	@Parameter(property = "scopes")
+	List<String> scopes;
+
+	@Parameter(property = "missingStatus", defaultValue = "MISSING")
+	String missingStatus;
+
+	@Parameter(property = "differStatus", defaultValue = "DIFFER")
+	String differStatus;
+
+	@Parameter(property = "matchStatus", defaultValue = "MATCH")
+	String matchStatus;
+
+	/**
+	 * If true, the created versions file is attached to the project as an artifact
+	 */
+	@Parameter(property = "attach", defaultValue = "true")
+	boolean attach;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	protected void doExecute() throws MojoExecutionException {
+		File retrievedFile = retrieveVersionsArtifact();
+
+		List<Artifact> artifacts = resolveVersionedArtifacts(includeAllArtifacts, scopes);
+		VersionsDiff.Source versions = new ArtifactVersionsSource(artifacts);
+		VersionsDigest digest = getVersionsDigest(versions);
+		writeVersionsFile(versions, digest, getVersionsOutputFile());
+		if (attach) {
+			attachVersionsArtifact(getVersionsOutputFile());
+		}
+
+		if (retrievedFile == null) {
+			writeStringToFile(missingStatus, getDiffStatusFile());
+		}
+		else {
+			VersionsDigest retrievedDigest = readVersionsDigest(retrieveVersionsDigestArtifact());
+			if (digest.getRoot().equals(readRootDigest(retrievedFile, retrievedDigest))) {
+				getLog().info("Root digest of versions is unchanged");
+				writeStringToFile(matchStatus, getDiffStatusFile());
+				return;
+			}
+			logDifferingGroups(retrievedDigest, digest);
+			try {
+				VersionsDiff diff = diffVersions(getArtifactFilter().filter(new VersionsDiff.FileSource(retrievedFile)),
+						versions);
+				writeVersionsComparison(diff, matchStatus, differStatus);
+			}
+			catch (Exception e) {
+				throw new MojoExecutionException("An error occurred comparing versions from yaml", e);
+			}
+		}
+	}
+}
@@ -11,22 +11,19 @@ package org.openmrs.maven.plugins.dependency;
 
 import java.io.File;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jsonpatch.diff.JsonDiff;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.plugins.annotations.ResolutionScope;
 
 /**
  * This Mojo compares two version files and outputs two files.
- * The first file contains details on what versions differ.
- * The second file contains a status on the comparison
+ * The first file contains details on what versions were added, removed, or changed.
+ * The second file contains a status on the comparison.
+ * If both files embed the same root digest, they are taken to match without comparing their entries
  */
 @Mojo(name = "compare-versions",
-		defaultPhase = LifecyclePhase.GENERATE_RESOURCES,
-		requiresDependencyResolution = ResolutionScope.TEST)
+		defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
 public class CompareVersionsMojo extends DependencyMojo {
 
 	@Parameter(property = "compareFrom")
@@ -47,7 +44,7 @@ public class CompareVersionsMojo extends DependencyMojo {
 	/**
 	 * @throws MojoExecutionException if an error occurs
 	 */
-	public void execute() throws MojoExecutionException {
+	protected void doExecute() throws MojoExecutionException {
 		if (compareFrom == null) {
 			compareFrom = getRetrievedVersionsOutputFile();
 			getLog().info("Using default compareFrom of " + compareFrom);
@@ -56,26 +53,33 @@ public class CompareVersionsMojo extends DependencyMojo {
 			compareTo = getVersionsOutputFile();
 			getLog().info("Using default compareTo of " + compareTo);
 		}
-		File diffStatusFile = new File(outputDir, "versions-diff-status.txt");
-		File diffContentsFile = new File(outputDir, "versions-diff.yml");
 		if (!compareFrom.exists() || !compareTo.exists()) {
-			writeStringToFile(missingStatus, diffStatusFile);
+			writeStringToFile(missingStatus, getDiffStatusFile());
 		} else {
+			VersionsDigest fromDigest = readVersionsDigest(getCompareFromDigestFile());
+			VersionsDigest toDigest = readVersionsDigest(VersionsDigest.getDigestFile(compareTo));
+			String fromRoot = readRootDigest(compareFrom, fromDigest);
+			if (fromRoot != null && fromRoot.equals(readRootDigest(compareTo, toDigest))) {
+				getLog().info("Root digests of versions are equal");
+				writeStringToFile(matchStatus, getDiffStatusFile());
+				return;
+			}
+			logDifferingGroups(fromDigest, toDigest);
 			try {
-				JsonNode fromJson = readObjectFromYamlFile(compareFrom);
-				JsonNode toNode = readObjectFromYamlFile(compareTo);
-				if (fromJson.equals(toNode)) {
-					writeStringToFile(matchStatus, diffStatusFile);
-				}
-				else {
-					writeStringToFile(differStatus, diffStatusFile);
-					JsonNode patchNode = JsonDiff.asJson(fromJson, toNode);
-					writeStringToFile(patchNode.toPrettyString(), diffContentsFile);
-				}
+				VersionsDiff diff = diffVersions(getArtifactFilter().filter(new VersionsDiff.FileSource(compareFrom)),
+						getArtifactFilter().filter(new VersionsDiff.FileSource(compareTo)));
+				writeVersionsComparison(diff, matchStatus, differStatus);
 			}
 			catch (Exception e) {
 				throw new MojoExecutionException("An error occurred comparing versions from yaml", e);
 			}
 		}
 	}
+
+	/**
+	 * @return the digest file of compareFrom, which by default is written alongside it
+	 */
+	protected File getCompareFromDigestFile() {
+		return VersionsDigest.getDigestFile(compareFrom);
+	}
 }
@@ -9,46 +9,86 @@
  */
 package org.openmrs.maven.plugins.dependency;
 
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeMap;
+import java.util.Collection;
+import java.util.List;
 
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.apache.maven.plugins.annotations.ResolutionScope;
-import org.apache.maven.project.MavenProject;
 
 /**
  * The purpose of this Mojo is to analyze any dependencies, and to output a file that contains each
  * of these dependencies, along with information about the current version referred to in the project
  * Snapshots will be referred to by their actual build and timestamp to remove ambiguity and allow version comparision
+ * The file is only re-written if the versions have changed since it was last written
  */
 @Mojo(name = "create-versions",
-		defaultPhase = LifecyclePhase.GENERATE_RESOURCES,
-		requiresDependencyResolution = ResolutionScope.TEST)
+		defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
 public class CreateVersionsMojo extends DependencyMojo {
 
 	@Parameter(property = "includeAllArtifacts", defaultValue = "false")
 	boolean includeAllArtifacts;
 
+	/**
+	 * The scopes of the dependencies to include.  If not specified, dependencies in all scopes are included
+	 */
+	@Parameter(property = "scopes")
+	List<String> scopes;
+
+	/**
+	 * If true, each new set of versions is appended as a snapshot to the local history in the historyDir
+	 */
+	@Parameter(property = "recordHistory", defaultValue = "false")
+	boolean recordHistory;
+
+	/**
+	 * The label by which snapshots recorded in the history are identified
+	 */
+	@Parameter(property = "historyLabel", defaultValue = "${project.version}")
+	String historyLabel;
+
 	/**
 	 * @throws MojoExecutionException if an error occurs
 	 */
-	public void execute() throws MojoExecutionException {
-		Map<String, Map<String, String>> groupMap = new TreeMap<>();
-		MavenProject mp = getMavenExecutionEnvironment().getMavenProject();
-		Set<Artifact> artifacts = (includeAllArtifacts ? mp.getArtifacts() : mp.getDependencyArtifacts());
-		for (Artifact a : artifacts) {
-			Map<String, String> artifactAndVersion = groupMap.get(a.getGroupId());
-			if (artifactAndVersion == null) {
-				artifactAndVersion = new TreeMap<>();
-				groupMap.put(a.getGroupId(), artifactAndVersion);
+	protected void doExecute() throws MojoExecutionException {
+		writeVersions(resolveVersionedArtifacts(includeAllArtifacts, scopes));
+	}
+
+	/**
+	 * Writes the versions of the passed artifacts to the versions file, unless it is already up to date
+	 */
+	protected void writeVersions(Collection<Artifact> artifacts) throws MojoExecutionException {
+		VersionsDiff.Source versions = new ArtifactVersionsSource(artifacts);
+		VersionsDigest digest = getVersionsDigest(versions);
+		if (recordHistory) {
+			recordHistory(versions);
+		}
+		UpToDateCheck upToDateCheck = newUpToDateCheck(getVersionsOutputFile());
+		upToDateCheck.add("versions", digest.getRoot());
+		if (upToDateCheck.isUpToDate()) {
+			getLog().info(getVersionsOutputFile() + " is up to date");
+			return;
+		}
+		writeVersionsFile(versions, digest, getVersionsOutputFile());
+		recordUpToDateCheck(upToDateCheck);
+	}
+
+	/**
+	 * Records the versions in the history, unless they are unchanged since the last snapshot.
+	 * As with the hash cache, a history that cannot be written should not fail the build
+	 */
+	protected void recordHistory(VersionsDiff.Source versions) {
+		VersionsHistory history = getVersionsHistory();
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.HISTORY)) {
+			int snapshot = history.record(versions, historyLabel, System.currentTimeMillis());
+			if (snapshot > 0) {
+				getLog().info("Recorded snapshot " + snapshot + " of versions in history " + history.getDir());
 			}
-			artifactAndVersion.put(a.getArtifactId(), a.getVersion());
 		}
-		writeObjectToYamlFile(groupMap, getVersionsOutputFile());
+		catch (Exception e) {
+			getLog().warn("Unable to record versions in history " + history.getDir(), e);
+		}
 	}
 }
@@ -9,24 +9,54 @@
  */
 package org.openmrs.maven.plugins.dependency;
 
-import static org.twdata.maven.mojoexecutor.MojoExecutor.executionEnvironment;
-
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
 
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.apache.commons.io.FileUtils;
+import org.apache.maven.RepositoryUtils;
+import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.repository.ArtifactRepository;
+import org.apache.maven.artifact.versioning.VersionRange;
 import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.AbstractMojo;
-import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.DefaultDependencyResolutionRequest;
+import org.apache.maven.project.DependencyResolutionResult;
 import org.apache.maven.project.MavenProject;
-import org.twdata.maven.mojoexecutor.MojoExecutor;
+import org.apache.maven.project.MavenProjectHelper;
+import org.apache.maven.project.ProjectDependenciesResolver;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.eclipse.aether.graph.DependencyFilter;
+import org.eclipse.aether.graph.DependencyNode;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResult;
+import org.eclipse.aether.resolution.VersionRangeRequest;
+import org.eclipse.aether.resolution.VersionRequest;
+import org.eclipse.aether.resolution.VersionResult;
+import org.eclipse.aether.util.filter.AndDependencyFilter;
+import org.eclipse.aether.util.filter.ScopeDependencyFilter;
+import org.eclipse.aether.version.Version;
 
 /**
  * Base Mojo superclass to be used within the dependency plugin
@@ -39,6 +69,12 @@ public abstract class DependencyMojo extends AbstractMojo {
 	@Parameter(defaultValue = "${session}", readonly = true)
 	MavenSession mavenSession;
 
+	@Parameter(defaultValue = "${plugin}", readonly = true)
+	PluginDescriptor pluginDescriptor;
+
+	@Parameter(defaultValue = "${mojoExecution}", readonly = true)
+	MojoExecution mojoExecution;
+
 	@Parameter(property = "outputDir", defaultValue = "${project.build.directory}/openmrs-dependency")
 	File outputDir;
 
@@ -48,14 +84,108 @@ public abstract class DependencyMojo extends AbstractMojo {
 	@Parameter(property = "versionsType", defaultValue = "yml")
 	String versionsType;
 
+	/**
+	 * Patterns of the artifacts to include, in the form groupId:artifactId:version:classifier, where any part may
+	 * contain * wildcards and trailing parts may be left out.  If not specified, all artifacts are included
+	 */
+	@Parameter(property = "includes")
+	List<String> includes;
+
+	/**
+	 * Patterns of the artifacts to exclude, in the same form as includes
+	 */
+	@Parameter(property = "excludes")
+	List<String> excludes;
+
+	/**
+	 * If true, the metrics of each goal are written to $outputDir/$goal-metrics.json, as well as being logged
+	 */
+	@Parameter(property = "writeMetrics", defaultValue = "true")
+	boolean writeMetrics;
+
+	/**
+	 * The directory of the local history of versions snapshots, recorded by create-versions and queried by
+	 * versions-history.  This is outside of the build directory by default, so that it is kept across clean builds
+	 */
+	@Parameter(property = "historyDir",
+			defaultValue = "${settings.localRepository}/../openmrs-dependency-history/${project.groupId}/${project.artifactId}")
+	File historyDir;
+
+	private ArtifactFilter artifactFilter;
+
+	/**
+	 * The metrics of the current execution of the goal, to which each phase of its work is recorded.
+	 * This is created when the goal is executed, so that each execution records only its own work
+	 */
+	protected ExecutionMetrics metrics;
+
+	@Component
+	RepositorySystem repositorySystem;
+
 	@Component
-	BuildPluginManager pluginManager;
+	MavenProjectHelper projectHelper;
+
+	@Component
+	ProjectDependenciesResolver dependenciesResolver;
 
 	/**
-	 * Convenience method to get the execution environment for invoking other Maven plugins
+	 * Executes the goal, recording the time spent in each phase of its work, which is logged once the goal completes
+	 * and written to the metrics file in the outputDir
+	 * @throws MojoExecutionException if an error occurs
 	 */
-	protected MojoExecutor.ExecutionEnvironment getMavenExecutionEnvironment() {
-		return executionEnvironment(mavenProject, mavenSession, pluginManager);
+	public void execute() throws MojoExecutionException {
+		metrics = new ExecutionMetrics();
+		try {
+			doExecute();
+		}
+		finally {
+			reportMetrics();
+		}
+	}
+
+	/**
+	 * Does the work of the goal
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	protected abstract void doExecute() throws MojoExecutionException;
+
+	/**
+	 * Logs the metrics of the goal, and writes them to the metrics file, unless nothing was recorded.
+	 * Metrics that cannot be written should not fail the build
+	 */
+	protected void reportMetrics() {
+		if (metrics.isEmpty()) {
+			return;
+		}
+		final ExecutionMetrics.Summary summary = metrics.getSummary(getGoal());
+		ExecutionMetrics.log(summary, getLog());
+		if (writeMetrics) {
+			try {
+				writeToFile(getMetricsFile(), VersionsFormat.JSON, new OutputWriter() {
+					@Override
+					public void write(OutputStream out) throws IOException {
+						VersionsFormat.JSON.write(summary, out);
+					}
+				});
+			}
+			catch (Exception e) {
+				getLog().warn("Unable to write metrics to " + getMetricsFile(), e);
+			}
+		}
+	}
+
+	/**
+	 * @return the name of the goal being executed
+	 */
+	protected String getGoal() {
+		return (mojoExecution == null ? getClass().getSimpleName() : mojoExecution.getGoal());
+	}
+
+	/**
+	 * @return the file to which the metrics of the goal are written
+	 */
+	public File getMetricsFile() {
+		return new File(outputDir, getGoal() + "-metrics.json");
 	}
 
 	/**
@@ -93,6 +223,330 @@ public abstract class DependencyMojo extends AbstractMojo {
 		return new File(outputDir, versionsClassifier + "-retrieved." + versionsType);
 	}
 
+	/**
+	 * @return the classifier of the digest file attached alongside the versions artifact
+	 */
+	public String getVersionsDigestClassifier() {
+		return versionsClassifier + "-digest";
+	}
+
+	/**
+	 * @return the file containing the status of the most recent versions comparison
+	 */
+	public File getDiffStatusFile() {
+		return new File(outputDir, "versions-diff-status.txt");
+	}
+
+	/**
+	 * @return the file containing the details of what differs in the most recent versions comparison
+	 */
+	public File getDiffContentsFile() {
+		return new File(outputDir, "versions-diff.yml");
+	}
+
+	/**
+	 * @return the local history of versions snapshots of this project
+	 */
+	protected VersionsHistory getVersionsHistory() {
+		return new VersionsHistory(historyDir);
+	}
+
+	/**
+	 * @return the filter of artifacts built from the includes and excludes, which is built only once
+	 * @throws MojoExecutionException if any pattern is invalid
+	 */
+	protected ArtifactFilter getArtifactFilter() throws MojoExecutionException {
+		if (artifactFilter == null) {
+			try {
+				artifactFilter = new ArtifactFilter(includes, getExcludePatterns());
+			}
+			catch (IllegalArgumentException e) {
+				throw new MojoExecutionException(e.getMessage(), e);
+			}
+		}
+		return artifactFilter;
+	}
+
+	/**
+	 * @return the patterns of the artifacts to exclude
+	 */
+	protected List<String> getExcludePatterns() {
+		return excludes;
+	}
+
+	/**
+	 * Resolves the versions of the project dependencies in the given scopes, without requiring Maven to resolve the
+	 * full dependency graph before the goal executes.  Unless includeAllArtifacts is true, only the versions of the
+	 * direct dependencies are resolved, which for SNAPSHOTs requires only repository metadata rather than the artifacts.
+	 * If includeAllArtifacts is true, the transitive dependencies in the given scopes are resolved.
+	 * @param scopes the scopes of the dependencies to resolve, or null or empty for all scopes
+	 * @return the resolved artifacts, with SNAPSHOT versions resolved to specific timestamps and build numbers
+	 */
+	protected List<Artifact> resolveVersionedArtifacts(boolean includeAllArtifacts, Collection<String> scopes)
+			throws MojoExecutionException {
+		return resolveVersionedArtifacts(mavenProject, includeAllArtifacts, scopes, null);
+	}
+
+	/**
+	 * Resolves the versions of the dependencies of the passed project in the given scopes
+	 * @param excludedKeys the groupId:artifactId of artifacts to leave out, which are not resolved, or null for none
+	 * @see #resolveVersionedArtifacts(boolean, Collection)
+	 */
+	protected List<Artifact> resolveVersionedArtifacts(MavenProject project, boolean includeAllArtifacts,
+			Collection<String> scopes, Set<String> excludedKeys) throws MojoExecutionException {
+		List<Artifact> ret;
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.RESOLVE)) {
+			ret = doResolveVersionedArtifacts(project, includeAllArtifacts, scopes, excludedKeys);
+		}
+		metrics.add(ExecutionMetrics.ARTIFACTS, ret.size());
+		return ret;
+	}
+
+	/**
+	 * Resolves the versions of the dependencies of the passed project as resolveVersionedArtifacts does, without
+	 * recording their resolution in the metrics, so that the dependencies of several projects may be resolved
+	 * concurrently and timed once as a whole
+	 * @see #resolveVersionedArtifacts(MavenProject, boolean, Collection, Set)
+	 */
+	protected List<Artifact> doResolveVersionedArtifacts(MavenProject project, boolean includeAllArtifacts,
+			Collection<String> scopes, final Set<String> excludedKeys) throws MojoExecutionException {
+		List<Artifact> ret = new ArrayList<>();
+		try {
+			if (includeAllArtifacts) {
+				RepositorySystemSession session = mavenSession.getRepositorySession();
+				DefaultDependencyResolutionRequest request = new DefaultDependencyResolutionRequest(project, session);
+				DependencyFilter filter = null;
+				if (scopes != null && !scopes.isEmpty()) {
+					filter = new ScopeDependencyFilter(scopes, null);
+				}
+				if (excludedKeys != null && !excludedKeys.isEmpty()) {
+					filter = AndDependencyFilter.newInstance(filter, new DependencyFilter() {
+						@Override
+						public boolean accept(DependencyNode node, List<DependencyNode> parents) {
+							org.eclipse.aether.artifact.Artifact a = node.getArtifact();
+							return a == null || !excludedKeys.contains(a.getGroupId() + ":" + a.getArtifactId());
+						}
+					});
+				}
+				request.setResolutionFilter(filter);
+				DependencyResolutionResult result = dependenciesResolver.resolve(request);
+				for (org.eclipse.aether.graph.Dependency d : result.getDependencies()) {
+					Artifact artifact = RepositoryUtils.toArtifact(d.getArtifact());
+					if (getArtifactFilter().accept(artifact)) {
+						ret.add(artifact);
+					}
+				}
+			}
+			else {
+				for (Dependency d : project.getDependencies()) {
+					if (excludedKeys != null && excludedKeys.contains(d.getGroupId() + ":" + d.getArtifactId())) {
+						continue;
+					}
+					if (scopes == null || scopes.isEmpty() || scopes.contains(d.getScope())) {
+						Artifact artifact = resolveVersion(project, d);
+						if (getArtifactFilter().accept(artifact)) {
+							ret.add(artifact);
+						}
+					}
+				}
+			}
+		}
+		catch (MojoExecutionException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Unable to resolve the versions of project dependencies", e);
+		}
+		return ret;
+	}
+
+	/**
+	 * Resolves the version of the passed dependency from the repositories of the passed project, which for SNAPSHOTs
+	 * requires only repository metadata rather than the artifact itself
+	 * @return the resolved artifact, with any version range resolved to the highest version available, and any SNAPSHOT
+	 * version resolved to a specific timestamp and build number
+	 */
+	protected Artifact resolveVersion(MavenProject project, Dependency d) throws Exception {
+		RepositorySystemSession session = mavenSession.getRepositorySession();
+		List<RemoteRepository> repositories = project.getRemoteProjectRepositories();
+		org.eclipse.aether.artifact.Artifact a = RepositoryUtils.toDependency(d, session.getArtifactTypeRegistry()).getArtifact();
+		if (VersionRange.createFromVersionSpec(a.getVersion()).hasRestrictions()) {
+			VersionRangeRequest rangeRequest = new VersionRangeRequest(a, repositories, null);
+			Version highest = repositorySystem.resolveVersionRange(session, rangeRequest).getHighestVersion();
+			if (highest == null) {
+				throw new MojoExecutionException("No version available for " + a);
+			}
+			a = a.setVersion(highest.toString());
+		}
+		VersionResult result = repositorySystem.resolveVersion(session, new VersionRequest(a, repositories, null));
+		Artifact artifact = RepositoryUtils.toArtifact(a.setVersion(result.getVersion()));
+		artifact.setScope(d.getScope());
+		return artifact;
+	}
+
+	/**
+	 * @return the digest of the passed versions, which must be sorted
+	 */
+	protected VersionsDigest getVersionsDigest(VersionsDiff.Source versions) throws MojoExecutionException {
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.DIGEST)) {
+			return VersionsDigest.compute(versions);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Unable to compute the digest of versions", e);
+		}
+	}
+
+	/**
+	 * Streams the passed versions to the passed file in the format of the versionsType, with their root digest embedded
+	 * in its first line if the format allows, and writes the digest of each group to a separate digest file alongside it
+	 */
+	protected void writeVersionsFile(final VersionsDiff.Source versions, VersionsDigest digest, File file)
+			throws MojoExecutionException {
+		final VersionsFormat format = VersionsFormat.forType(versionsType);
+		final String header = VersionsDigest.ROOT_DIGEST_HEADER + digest.getRoot();
+		writeToFile(file, format, new OutputWriter() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				try (VersionsWriter writer = new VersionsWriter(format, out, header)) {
+					writer.write(versions);
+				}
+			}
+		});
+		writeObjectToYamlFile(digest, VersionsDigest.getDigestFile(file));
+	}
+
+	/**
+	 * @return the root digest embedded in the first line of the passed versions file, or null if none is found
+	 */
+	protected String readRootDigest(File file) throws MojoExecutionException {
+		try {
+			return VersionsDigest.readRootDigest(file);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Unable to read root digest from " + file, e);
+		}
+	}
+
+	/**
+	 * @return the root digest embedded in the first line of the passed versions file, or otherwise the root of the
+	 * passed digest of it, which is the only source of the root for versions files in formats that do not allow comments
+	 */
+	protected String readRootDigest(File file, VersionsDigest digest) throws MojoExecutionException {
+		String ret = readRootDigest(file);
+		return (ret == null && digest != null ? digest.getRoot() : ret);
+	}
+
+	/**
+	 * Logs the groups whose versions differ between the passed digests, if both are available
+	 */
+	protected void logDifferingGroups(VersionsDigest from, VersionsDigest to) {
+		if (from != null && to != null) {
+			getLog().info("Groups with differing versions: " + from.getDifferingGroups(to));
+		}
+	}
+
+	/**
+	 * @return the passed digest file, or null if it is null or does not exist
+	 */
+	protected VersionsDigest readVersionsDigest(File digestFile) throws MojoExecutionException {
+		if (digestFile == null || !digestFile.exists()) {
+			return null;
+		}
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.READ)) {
+			metrics.addBytes(ExecutionMetrics.READ, digestFile.length());
+			return getYamlMapper().readValue(digestFile, VersionsDigest.class);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Unable to read digest file " + digestFile, e);
+		}
+	}
+
+	/**
+	 * @return the differences between the passed versions, which are read as they are compared
+	 */
+	protected VersionsDiff diffVersions(VersionsDiff.Source from, VersionsDiff.Source to) throws IOException {
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.DIFF)) {
+			return VersionsDiff.compare(from, to);
+		}
+	}
+
+	/**
+	 * Writes the matchStatus or differStatus to the diff status file, according to whether the passed diff is empty.
+	 * If not, the added, removed, and changed versions are written to the diff contents file
+	 */
+	protected void writeVersionsComparison(VersionsDiff diff, String matchStatus, String differStatus)
+			throws MojoExecutionException {
+		if (diff.isEmpty()) {
+			writeStringToFile(matchStatus, getDiffStatusFile());
+		}
+		else {
+			writeStringToFile(differStatus, getDiffStatusFile());
+			writeObjectToYamlFile(diff.toMap(), getDiffContentsFile());
+		}
+	}
+
+	/**
+	 * Retrieves the latest installed or deployed versions artifact for the current project from the Maven repository.
+	 * This is resolved directly through the repository system, bypassing the reactor, so that the versions artifact
+	 * of the current build is never returned in place of the one previously installed or deployed
+	 * @return the retrieved file in the local repository, or null if no versions artifact could be retrieved
+	 */
+	protected File retrieveVersionsArtifact() {
+		return retrieveArtifact(versionsClassifier, versionsType, true);
+	}
+
+	/**
+	 * Retrieves the digest attached alongside the latest installed or deployed versions artifact, in the same way as
+	 * retrieveVersionsArtifact
+	 * @return the retrieved file in the local repository, or null if no digest was attached
+	 */
+	protected File retrieveVersionsDigestArtifact() {
+		File ret = retrieveArtifact(getVersionsDigestClassifier(), "yml", false);
+		if (ret == null) {
+			getLog().info("No digest was attached alongside the versions artifact, so differing groups are not found");
+		}
+		return ret;
+	}
+
+	/**
+	 * @param warn if true, a warning is logged if the artifact cannot be retrieved
+	 * @return the retrieved file in the local repository of the artifact of the current project with the passed
+	 * classifier and type, or null if it could not be retrieved
+	 */
+	protected File retrieveArtifact(String classifier, String type, boolean warn) {
+		Artifact a = mavenProject.getArtifact();
+		String baseVersion = a.getBaseVersion(); // This is the non-timestamped snapshot
+		DefaultArtifact versionsArtifact = new DefaultArtifact(
+				a.getGroupId(), a.getArtifactId(), classifier, type, baseVersion);
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.RETRIEVE)) {
+			DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(mavenSession.getRepositorySession());
+			session.setWorkspaceReader(null);
+			ArtifactRequest request = new ArtifactRequest(versionsArtifact, mavenProject.getRemoteProjectRepositories(), null);
+			ArtifactResult result = repositorySystem.resolveArtifact(session, request);
+			File latestFile = result.getArtifact().getFile();
+			getLog().info("Retrieved " + latestFile.getName() + " from repository");
+			return latestFile;
+		}
+		catch (Exception e) {
+			if (warn) {
+				getLog().warn("Unable to retrieve " + versionsArtifact + " from Maven repository");
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Attaches the passed file to the project as the versions artifact, to be installed and deployed along with it,
+	 * and the digest file written alongside it as the versions digest artifact, so that later builds can retrieve both
+	 */
+	protected void attachVersionsArtifact(File file) {
+		projectHelper.attachArtifact(mavenProject, versionsType, versionsClassifier, file);
+		File digestFile = VersionsDigest.getDigestFile(file);
+		if (digestFile.exists()) {
+			projectHelper.attachArtifact(mavenProject, "yml", getVersionsDigestClassifier(), digestFile);
+		}
+	}
+
 	/**
 	 * Ensures the parent directory of the passed file exists
 	 */
@@ -103,26 +557,129 @@ public abstract class DependencyMojo extends AbstractMojo {
 	}
 
 	/**
-	 * Convenience method to enable writing an object to an output file as yaml
+	 * @return a new check of whether the passed output file is up to date, with the version of this plugin already
+	 * added as an input, and which records its fingerprint in the outputDir, named after the output file
 	 */
-	protected void writeObjectToYamlFile(Object o, File outputFile) throws MojoExecutionException {
+	protected UpToDateCheck newUpToDateCheck(File outputFile) {
+		UpToDateCheck check = new UpToDateCheck(new File(outputDir, outputFile.getName() + ".fingerprint"), outputFile);
+		check.add("pluginVersion", pluginDescriptor == null ? null : pluginDescriptor.getVersion());
+		return check;
+	}
+
+	/**
+	 * Convenience method to record the fingerprint of an up to date check once its output has been written
+	 */
+	protected void recordUpToDateCheck(UpToDateCheck check) {
+		try {
+			check.record();
+		}
+		catch (Exception e) {
+			getLog().warn("Unable to record fingerprint of inputs", e);
+		}
+	}
+
+	/**
+	 * A cache that cannot be read or written should not fail the build, it only means that files are re-hashed
+	 */
+	protected void loadHashCache(HashCache hashCache) {
+		try {
+			hashCache.load();
+			getLog().debug("Loaded " + hashCache.size() + " entries from hash cache " + hashCache.getCacheFile());
+		}
+		catch (Exception e) {
+			getLog().warn("Unable to load hash cache from " + hashCache.getCacheFile(), e);
+		}
+	}
+
+	protected void saveHashCache(HashCache hashCache) {
+		try {
+			hashCache.save();
+		}
+		catch (Exception e) {
+			getLog().warn("Unable to save hash cache to " + hashCache.getCacheFile(), e);
+		}
+	}
+
+	/**
+	 * Moves the passed temporary file to the passed target file, replacing it atomically where the file system allows
+	 * so that readers of the target never see a partially written file
+	 */
+	protected void moveIntoPlace(File tempFile, File targetFile) throws IOException {
 		try {
-			ensureDirectoryExists(outputFile);
-			ObjectWriter writer = getYamlMapper().writerWithDefaultPrettyPrinter();
-			writer.writeValue(outputFile, o);
+			Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e) {
+			Files.move(tempFile.toPath(), targetFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * @return a new temporary file in the same directory as the passed file, from which it can be moved into place
+	 */
+	protected File createTempFileFor(File file) throws IOException {
+		ensureDirectoryExists(file);
+		return File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+	}
+
+	/**
+	 * Convenience method to enable writing an object to an output file as yaml.
+	 * The file is written to a temporary file and then moved into place
+	 */
+	protected void writeObjectToYamlFile(Object o, File outputFile) throws MojoExecutionException {
+		writeObjectToYamlFile(o, outputFile, null);
+	}
+
+	/**
+	 * Convenience method to enable writing an object to an output file as yaml, preceded by the passed header line
+	 * if not null.  The file is written to a temporary file and then moved into place
+	 */
+	protected void writeObjectToYamlFile(final Object o, File outputFile, final String header)
+			throws MojoExecutionException {
+		writeToFile(outputFile, VersionsFormat.YAML, new OutputWriter() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				if (header != null) {
+					out.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+				}
+				VersionsFormat.YAML.write(o, out);
+			}
+		});
+	}
+
+	/**
+	 * Writes an output file in the passed format, using the passed writer to write to a stream in that format.
+	 * The file is written to a temporary file and then moved into place
+	 */
+	protected void writeToFile(File outputFile, VersionsFormat format, OutputWriter writer)
+			throws MojoExecutionException {
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.WRITE)) {
+			File tempFile = createTempFileFor(outputFile);
+			try {
+				try (OutputStream out = format.openOutputStream(tempFile)) {
+					writer.write(out);
+				}
+				metrics.addBytes(ExecutionMetrics.WRITE, tempFile.length());
+				moveIntoPlace(tempFile, outputFile);
+			}
+			finally {
+				Files.deleteIfExists(tempFile.toPath());
+			}
 			getLog().info("Wrote output to: " + outputFile);
 		}
 		catch (Exception e) {
-			throw new MojoExecutionException("Error writing to Yaml output file", e);
+			throw new MojoExecutionException("Error writing to output file " + outputFile, e);
 		}
 	}
 
 	/**
-	 * Convenience method to enable reading an object from a yaml file
+	 * Convenience method to enable reading an object from a yaml file.
+	 * Files in any of the supported versions formats are also read, detecting the format from their contents
 	 */
 	protected JsonNode readObjectFromYamlFile(File file) throws MojoExecutionException {
-		try {
-			return getYamlMapper().readTree(file);
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.READ);
+				JsonParser parser = VersionsFormat.createParser(file)) {
+			metrics.addBytes(ExecutionMetrics.READ, file.length());
+			return getYamlMapper().readTree(parser);
 		}
 		catch (Exception e) {
 			throw new MojoExecutionException("Error reading yaml from file " + file);
@@ -130,11 +687,19 @@ public abstract class DependencyMojo extends AbstractMojo {
 	}
 
 	/**
-	 * Utility method to write a string to a file
+	 * Utility method to write a string to a file, through a temporary file that is then moved into place
 	 */
 	protected void writeStringToFile(String s, File f) throws MojoExecutionException {
-		try {
-			FileUtils.writeStringToFile(f, s, "UTF-8");
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.WRITE)) {
+			File tempFile = createTempFileFor(f);
+			try {
+				FileUtils.writeStringToFile(tempFile, s, "UTF-8");
+				metrics.addBytes(ExecutionMetrics.WRITE, tempFile.length());
+				moveIntoPlace(tempFile, f);
+			}
+			finally {
+				Files.deleteIfExists(tempFile.toPath());
+			}
 		}
 		catch (Exception e) {
 			throw new MojoExecutionException("Error writing to file " + f, e);
@@ -145,6 +710,13 @@ public abstract class DependencyMojo extends AbstractMojo {
 	 * Convenience to get a shared ObjectMapper for reading/writing yaml
 	 */
 	protected ObjectMapper getYamlMapper() {
-		return new ObjectMapper(new YAMLFactory());
+		return VersionsFormat.YAML.getMapper();
+	}
+
+	/**
+	 * Writes the contents of an output file to a stream
+	 */
+	protected interface OutputWriter {
+		void write(OutputStream out) throws IOException;
 	}
 }
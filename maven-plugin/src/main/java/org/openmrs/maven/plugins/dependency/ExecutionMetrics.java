@@ -0,0 +1,440 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.Closeable;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * Records where the time of a goal is spent, as the time, count, and bytes of each named phase, such as resolve,
+ * hash, read, or write, along with named counters, such as cache hits and misses, and the slowest files hashed.
+ * The peak heap used while the goal runs is also recorded, though as it is the peak of the whole JVM, this includes
+ * the heap used by anything running alongside the goal, such as other modules of a parallel build.  For the same
+ * reason, the peaks of the JVM are never reset, but compared with those when the goal started.
+ * All methods may be called concurrently from multiple threads.  Phases that run concurrently on several threads
+ * should be timed once around the work as a whole, so that their throughput reflects the elapsed time.
+ */
+public class ExecutionMetrics {
+
+	public static final String RESOLVE = "resolve";
+	public static final String COLLECT = "collect";
+	public static final String HASH = "hash";
+	public static final String DIGEST = "digest";
+	public static final String READ = "read";
+	public static final String WRITE = "write";
+	public static final String RETRIEVE = "retrieve";
+	public static final String DIFF = "diff";
+	public static final String HISTORY = "history";
+
+	public static final String HASH_CACHE_HITS = "hashCacheHits";
+	public static final String HASH_CACHE_MISSES = "hashCacheMisses";
+	public static final String ARTIFACTS = "artifacts";
+
+	/**
+	 * The number of the slowest files hashed that are retained
+	 */
+	private static final int SLOWEST_FILES = 10;
+
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private static final double BYTES_PER_MB = 1024 * 1024;
+
+	private final long startNanos = System.nanoTime();
+
+	private final Map<String, Phase> phases = new ConcurrentHashMap<>();
+
+	private final Map<String, AtomicLong> counters = new ConcurrentHashMap<>();
+
+	private final PriorityQueue<FileTiming> slowestFiles = new PriorityQueue<>(SLOWEST_FILES + 1,
+			new Comparator<FileTiming>() {
+				@Override
+				public int compare(FileTiming t1, FileTiming t2) {
+					return Long.compare(t1.nanos, t2.nanos);
+				}
+			});
+
+	/**
+	 * The peak and current usage of each heap memory pool by name, when the goal started
+	 */
+	private final Map<String, long[]> heapBaseline = new HashMap<>();
+
+	public ExecutionMetrics() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage peak = (pool.getType() == MemoryType.HEAP && pool.isValid() ? pool.getPeakUsage() : null);
+			MemoryUsage usage = (peak != null ? pool.getUsage() : null);
+			if (usage != null) {
+				heapBaseline.put(pool.getName(), new long[] { peak.getUsed(), usage.getUsed() });
+			}
+		}
+	}
+
+	/**
+	 * Starts timing the named phase, until the returned timer is closed
+	 */
+	public Timer time(String phase) {
+		return new Timer(getPhase(phase));
+	}
+
+	/**
+	 * Adds to the number of bytes processed by the named phase
+	 */
+	public void addBytes(String phase, long bytes) {
+		getPhase(phase).bytes.addAndGet(bytes);
+	}
+
+	/**
+	 * Adds one to the named counter
+	 */
+	public void increment(String counter) {
+		add(counter, 1);
+	}
+
+	/**
+	 * Adds the passed amount to the named counter
+	 */
+	public void add(String counter, long amount) {
+		AtomicLong value = counters.get(counter);
+		if (value == null) {
+			counters.putIfAbsent(counter, new AtomicLong());
+			value = counters.get(counter);
+		}
+		value.addAndGet(amount);
+	}
+
+	/**
+	 * Records the time taken to hash a single file, retaining only the slowest
+	 */
+	public void recordFile(File file, long bytes, long nanos) {
+		synchronized (slowestFiles) {
+			slowestFiles.add(new FileTiming(file.getPath(), bytes, nanos));
+			if (slowestFiles.size() > SLOWEST_FILES) {
+				slowestFiles.poll();
+			}
+		}
+	}
+
+	/**
+	 * @return true if nothing has been recorded
+	 */
+	public boolean isEmpty() {
+		return phases.isEmpty() && counters.isEmpty();
+	}
+
+	/**
+	 * @return a snapshot of the metrics recorded so far, which may be written as JSON
+	 */
+	public Summary getSummary(String goal) {
+		Summary ret = new Summary();
+		ret.goal = goal;
+		ret.totalMillis = (System.nanoTime() - startNanos) / NANOS_PER_MILLI;
+		ret.peakHeapBytes = getPeakHeapBytes();
+		for (Map.Entry<String, Phase> e : new TreeMap<>(phases).entrySet()) {
+			Phase phase = e.getValue();
+			ret.phases.put(e.getKey(), new PhaseSummary(phase.count.get(), phase.nanos.get(), phase.bytes.get()));
+		}
+		for (Map.Entry<String, AtomicLong> e : new TreeMap<>(counters).entrySet()) {
+			ret.counters.put(e.getKey(), e.getValue().get());
+		}
+		List<FileTiming> files;
+		synchronized (slowestFiles) {
+			files = new ArrayList<>(slowestFiles);
+		}
+		Collections.sort(files, Collections.reverseOrder(slowestFiles.comparator()));
+		for (FileTiming file : files) {
+			ret.slowestFiles.add(new FileSummary(file.path, file.bytes, file.nanos));
+		}
+		return ret;
+	}
+
+	/**
+	 * Logs the passed summary as a few lines of text
+	 */
+	public static void log(Summary summary, Log log) {
+		log.info("Completed " + summary.goal + " in " + summary.totalMillis + " ms, with a peak heap of "
+				+ formatBytes(summary.peakHeapBytes));
+		for (Map.Entry<String, PhaseSummary> e : summary.phases.entrySet()) {
+			PhaseSummary phase = e.getValue();
+			StringBuilder line = new StringBuilder("  " + e.getKey() + ": " + phase.millis + " ms");
+			line.append(" (").append(phase.count).append(phase.count == 1 ? " time)" : " times)");
+			if (phase.bytes > 0) {
+				line.append(", ").append(formatBytes(phase.bytes)).append(String.format(" at %.1f MB/s", phase.mbPerSecond));
+			}
+			log.info(line.toString());
+		}
+		for (Map.Entry<String, Long> e : summary.counters.entrySet()) {
+			log.info("  " + e.getKey() + ": " + e.getValue());
+		}
+		for (FileSummary file : summary.slowestFiles) {
+			log.debug("  hashed " + file.path + ", " + formatBytes(file.bytes) + " in " + file.millis + " ms");
+		}
+	}
+
+	/**
+	 * @return the sum over the heap memory pools of the peak usage of each, if it has risen since the goal started, or
+	 * otherwise of the greater of its usage when the goal started and now, as its peak was then reached before the goal
+	 */
+	private long getPeakHeapBytes() {
+		long ret = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage peak = (pool.getType() == MemoryType.HEAP && pool.isValid() ? pool.getPeakUsage() : null);
+			MemoryUsage usage = (peak != null ? pool.getUsage() : null);
+			if (usage == null) {
+				continue;
+			}
+			long[] baseline = heapBaseline.get(pool.getName());
+			if (baseline == null || peak.getUsed() > baseline[0]) {
+				ret += peak.getUsed();
+			}
+			else {
+				ret += Math.max(baseline[1], usage.getUsed());
+			}
+		}
+		return ret;
+	}
+
+	private static String formatBytes(long bytes) {
+		return (bytes < BYTES_PER_MB ? String.format("%.1f KB", bytes / 1024.0) : String.format("%.1f MB", bytes / BYTES_PER_MB));
+	}
+
+	private Phase getPhase(String name) {
+		Phase phase = phases.get(name);
+		if (phase == null) {
+			phases.putIfAbsent(name, new Phase());
+			phase = phases.get(name);
+		}
+		return phase;
+	}
+
+	private static double toMbPerSecond(long bytes, long nanos) {
+		return (nanos == 0 ? 0 : (bytes / BYTES_PER_MB) / (nanos / 1e9));
+	}
+
+	private static class Phase {
+
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong nanos = new AtomicLong();
+		final AtomicLong bytes = new AtomicLong();
+	}
+
+	private static class FileTiming {
+
+		final String path;
+		final long bytes;
+		final long nanos;
+
+		FileTiming(String path, long bytes, long nanos) {
+			this.path = path;
+			this.bytes = bytes;
+			this.nanos = nanos;
+		}
+	}
+
+	/**
+	 * Times a phase from when it is created until it is closed
+	 */
+	public static class Timer implements Closeable {
+
+		private final Phase phase;
+
+		private final long start = System.nanoTime();
+
+		private Timer(Phase phase) {
+			this.phase = phase;
+		}
+
+		@Override
+		public void close() {
+			phase.nanos.addAndGet(System.nanoTime() - start);
+			phase.count.incrementAndGet();
+		}
+	}
+
+	/**
+	 * The metrics of a goal, as written to its metrics file
+	 */
+	@JsonPropertyOrder({ "goal", "totalMillis", "peakHeapBytes", "phases", "counters", "slowestFiles" })
+	public static class Summary {
+
+		private String goal;
+		private long totalMillis;
+		private long peakHeapBytes;
+		private Map<String, PhaseSummary> phases = new LinkedHashMap<>();
+		private Map<String, Long> counters = new LinkedHashMap<>();
+		private List<FileSummary> slowestFiles = new ArrayList<>();
+
+		public String getGoal() {
+			return goal;
+		}
+
+		public void setGoal(String goal) {
+			this.goal = goal;
+		}
+
+		public long getTotalMillis() {
+			return totalMillis;
+		}
+
+		public void setTotalMillis(long totalMillis) {
+			this.totalMillis = totalMillis;
+		}
+
+		public long getPeakHeapBytes() {
+			return peakHeapBytes;
+		}
+
+		public void setPeakHeapBytes(long peakHeapBytes) {
+			this.peakHeapBytes = peakHeapBytes;
+		}
+
+		public Map<String, PhaseSummary> getPhases() {
+			return phases;
+		}
+
+		public void setPhases(Map<String, PhaseSummary> phases) {
+			this.phases = phases;
+		}
+
+		public Map<String, Long> getCounters() {
+			return counters;
+		}
+
+		public void setCounters(Map<String, Long> counters) {
+			this.counters = counters;
+		}
+
+		public List<FileSummary> getSlowestFiles() {
+			return slowestFiles;
+		}
+
+		public void setSlowestFiles(List<FileSummary> slowestFiles) {
+			this.slowestFiles = slowestFiles;
+		}
+	}
+
+	@JsonPropertyOrder({ "count", "millis", "bytes", "mbPerSecond" })
+	public static class PhaseSummary {
+
+		private long count;
+		private long millis;
+		private long bytes;
+		private double mbPerSecond;
+
+		public PhaseSummary() {
+		}
+
+		PhaseSummary(long count, long nanos, long bytes) {
+			this.count = count;
+			this.millis = nanos / NANOS_PER_MILLI;
+			this.bytes = bytes;
+			this.mbPerSecond = toMbPerSecond(bytes, nanos);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public void setCount(long count) {
+			this.count = count;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public void setMillis(long millis) {
+			this.millis = millis;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public void setBytes(long bytes) {
+			this.bytes = bytes;
+		}
+
+		public double getMbPerSecond() {
+			return mbPerSecond;
+		}
+
+		public void setMbPerSecond(double mbPerSecond) {
+			this.mbPerSecond = mbPerSecond;
+		}
+	}
+
+	@JsonPropertyOrder({ "path", "bytes", "millis", "mbPerSecond" })
+	public static class FileSummary {
+
+		private String path;
+		private long bytes;
+		private long millis;
+		private double mbPerSecond;
+
+		public FileSummary() {
+		}
+
+		FileSummary(String path, long bytes, long nanos) {
+			this.path = path;
+			this.bytes = bytes;
+			this.millis = nanos / NANOS_PER_MILLI;
+			this.mbPerSecond = toMbPerSecond(bytes, nanos);
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+
+		public void setBytes(long bytes) {
+			this.bytes = bytes;
+		}
+
+		public long getMillis() {
+			return millis;
+		}
+
+		public void setMillis(long millis) {
+			this.millis = millis;
+		}
+
+		public double getMbPerSecond() {
+			return mbPerSecond;
+		}
+
+		public void setMbPerSecond(double mbPerSecond) {
+			this.mbPerSecond = mbPerSecond;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A hash algorithm that may be used to compute digests of files.
+ * Built-in implementations are available from HashAlgorithms, and additional implementations may be provided by
+ * listing them in META-INF/services/org.openmrs.maven.plugins.dependency.HashAlgorithm on the plugin classpath.
+ * Implementations must be thread-safe, though the Hasher instances they create need not be.
+ */
+public interface HashAlgorithm {
+
+	/**
+	 * @return the name used to configure this algorithm, eg. sha1Hex
+	 */
+	String getName();
+
+	/**
+	 * @return the length in bytes of the digests this algorithm produces
+	 */
+	int getDigestLength();
+
+	/**
+	 * @return the extension of the checksum files that Maven repositories store for this algorithm, eg. sha1,
+	 * or null if repositories do not store checksums for this algorithm
+	 */
+	String getChecksumExtension();
+
+	/**
+	 * @return a new Hasher, ready to accept input
+	 */
+	Hasher newHasher();
+
+	/**
+	 * Accumulates input and computes a single digest
+	 */
+	interface Hasher {
+
+		/**
+		 * Adds the remaining bytes of the passed buffer to the input, leaving the buffer position at its limit
+		 */
+		void update(ByteBuffer buffer);
+
+		/**
+		 * Adds the passed bytes to the input
+		 */
+		void update(byte[] bytes);
+
+		/**
+		 * @return the hex-encoded digest of all input
+		 */
+		String hexDigest();
+	}
+}
@@ -0,0 +1,58 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Provides access to the available HashAlgorithm implementations, which are the built-in algorithms
+ * along with any registered through java.util.ServiceLoader
+ */
+public class HashAlgorithms {
+
+	public static final String SHA1_HEX = "sha1Hex";
+	public static final String MD5_HEX = "md5Hex";
+	public static final String SHA256_HEX = "sha256Hex";
+	public static final String XXHASH64 = XxHash64HashAlgorithm.NAME;
+
+	/**
+	 * @return the built-in algorithms, along with those registered through java.util.ServiceLoader
+	 */
+	public static List<HashAlgorithm> getAvailableAlgorithms() {
+		List<HashAlgorithm> ret = new ArrayList<>();
+		ret.add(new MessageDigestHashAlgorithm(SHA1_HEX, "SHA-1", "sha1"));
+		ret.add(new MessageDigestHashAlgorithm(MD5_HEX, "MD5", "md5"));
+		ret.add(new MessageDigestHashAlgorithm(SHA256_HEX, "SHA-256", "sha256"));
+		ret.add(new XxHash64HashAlgorithm());
+		for (HashAlgorithm algorithm : ServiceLoader.load(HashAlgorithm.class, HashAlgorithms.class.getClassLoader())) {
+			ret.add(algorithm);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the algorithm with the given name, ignoring case
+	 * @throws MojoExecutionException if no such algorithm is available
+	 */
+	public static HashAlgorithm forName(String name) throws MojoExecutionException {
+		List<String> names = new ArrayList<>();
+		for (HashAlgorithm algorithm : getAvailableAlgorithms()) {
+			if (algorithm.getName().equalsIgnoreCase(name)) {
+				return algorithm;
+			}
+			names.add(algorithm.getName());
+		}
+		throw new MojoExecutionException("Unsupported algorithm " + name + ", please specify one of " + names);
+	}
+}
@@ -0,0 +1,257 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A persistent cache of file digests, stored as a simple tab-delimited text file so that it can be shared
+ * across builds.  Entries are keyed by algorithm and absolute path, and are only considered valid if the size
+ * and last modified time of the file are unchanged, so a cache hit only requires reading the file metadata.
+ * The cache is bounded to a maximum number of entries, evicting those least recently used when saved.
+ * Loading and saving take a lock on a sibling .lock file, and saving merges with whatever another build may
+ * have written in the meantime, so several concurrent builds may safely share one cache file.
+ */
+public class HashCache {
+
+	private static final String SEPARATOR = "\t";
+
+	/**
+	 * Cache hits only cause the cache to be re-saved if the entry was last recorded as used longer ago than this
+	 */
+	private static final long LAST_USED_RESOLUTION = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * File locks are held by the whole JVM, so threads of a parallel build sharing one cache file synchronize here
+	 */
+	private static final Map<String, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+	private final File cacheFile;
+
+	private final int maxEntries;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private volatile boolean modified = false;
+
+	/**
+	 * @param cacheFile the file in which cache entries are stored
+	 * @param maxEntries the maximum number of entries to retain when saving
+	 */
+	public HashCache(File cacheFile, int maxEntries) {
+		this.cacheFile = cacheFile;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * @return the cached digest for the given file and algorithm, or null if none is cached for its current size and
+	 * last modified time
+	 */
+	public String get(File file, String algorithm) {
+		Entry entry = entries.get(getKey(file, algorithm));
+		if (entry != null && entry.size == file.length() && entry.lastModified == file.lastModified()) {
+			long now = System.currentTimeMillis();
+			if (now - entry.lastUsed > LAST_USED_RESOLUTION) {
+				entry.lastUsed = now;
+				modified = true;
+			}
+			return entry.hash;
+		}
+		return null;
+	}
+
+	/**
+	 * Adds the digest for the given file and algorithm to the cache
+	 */
+	public void put(File file, String algorithm, String hash) {
+		Entry entry = new Entry();
+		entry.algorithm = algorithm;
+		entry.path = file.getAbsolutePath();
+		entry.size = file.length();
+		entry.lastModified = file.lastModified();
+		entry.lastUsed = System.currentTimeMillis();
+		entry.hash = hash;
+		entries.put(entry.getKey(), entry);
+		modified = true;
+	}
+
+	/**
+	 * Loads all entries from the cache file, if it exists
+	 */
+	public void load() throws IOException {
+		if (cacheFile.exists()) {
+			synchronized (getJvmLock()) {
+				try (FileChannel lockChannel = openLockChannel(); FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true)) {
+					merge(readEntries());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Saves the entries in this cache to the cache file, merged with any entries written by other builds since this
+	 * cache was loaded.  The file is written to a temporary file and then moved into place.
+	 */
+	public void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		File dir = cacheFile.getAbsoluteFile().getParentFile();
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		synchronized (getJvmLock()) {
+			try (FileChannel lockChannel = openLockChannel(); FileLock lock = lockChannel.lock()) {
+				if (cacheFile.exists()) {
+					merge(readEntries());
+				}
+				List<Entry> toWrite = new ArrayList<>(entries.values());
+				if (toWrite.size() > maxEntries) {
+					Collections.sort(toWrite, new Comparator<Entry>() {
+						@Override
+						public int compare(Entry e1, Entry e2) {
+							return Long.compare(e2.lastUsed, e1.lastUsed);
+						}
+					});
+					toWrite = toWrite.subList(0, maxEntries);
+				}
+				File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+				try {
+					try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+						for (Entry e : toWrite) {
+							writer.write(e.toLine());
+							writer.newLine();
+						}
+					}
+					Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				}
+				finally {
+					Files.deleteIfExists(tempFile.toPath());
+				}
+			}
+		}
+		modified = false;
+	}
+
+	/**
+	 * @return the file in which cache entries are stored
+	 */
+	public File getCacheFile() {
+		return cacheFile;
+	}
+
+	/**
+	 * @return the number of entries in this cache
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	private List<Entry> readEntries() throws IOException {
+		List<Entry> ret = new ArrayList<>();
+		try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				Entry entry = Entry.fromLine(line);
+				if (entry != null) {
+					ret.add(entry);
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds the passed entries, retaining whichever of any existing entry for the same key was used most recently
+	 */
+	private void merge(List<Entry> toMerge) {
+		for (Entry entry : toMerge) {
+			Entry existing = entries.get(entry.getKey());
+			if (existing == null || existing.lastUsed < entry.lastUsed) {
+				entries.put(entry.getKey(), entry);
+			}
+		}
+	}
+
+	private Object getJvmLock() {
+		String path = cacheFile.getAbsolutePath();
+		Object lock = JVM_LOCKS.get(path);
+		if (lock == null) {
+			JVM_LOCKS.putIfAbsent(path, new Object());
+			lock = JVM_LOCKS.get(path);
+		}
+		return lock;
+	}
+
+	private FileChannel openLockChannel() throws IOException {
+		File lockFile = new File(cacheFile.getAbsolutePath() + ".lock");
+		return new RandomAccessFile(lockFile, "rw").getChannel();
+	}
+
+	private static String getKey(File file, String algorithm) {
+		return algorithm + SEPARATOR + file.getAbsolutePath();
+	}
+
+	/**
+	 * Represents a single cached digest
+	 */
+	private static class Entry {
+
+		String algorithm;
+		String path;
+		long size;
+		long lastModified;
+		volatile long lastUsed;
+		String hash;
+
+		String getKey() {
+			return algorithm + SEPARATOR + path;
+		}
+
+		String toLine() {
+			return algorithm + SEPARATOR + size + SEPARATOR + lastModified + SEPARATOR + lastUsed + SEPARATOR + hash
+					+ SEPARATOR + path;
+		}
+
+		static Entry fromLine(String line) {
+			String[] fields = line.split(SEPARATOR, 6);
+			if (fields.length != 6) {
+				return null;
+			}
+			try {
+				Entry entry = new Entry();
+				entry.algorithm = fields[0];
+				entry.size = Long.parseLong(fields[1]);
+				entry.lastModified = Long.parseLong(fields[2]);
+				entry.lastUsed = Long.parseLong(fields[3]);
+				entry.hash = fields[4];
+				entry.path = fields[5];
+				return entry;
+			}
+			catch (NumberFormatException e) {
+				return null;
+			}
+		}
+	}
+}
@@ -10,16 +10,19 @@
 package org.openmrs.maven.plugins.dependency;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
-import org.apache.commons.codec.digest.DigestUtils;
-import org.apache.commons.io.FileUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.model.Dependency;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -34,40 +37,126 @@ import org.apache.maven.plugins.annotations.ResolutionScope;
  * The goal is to allow comparison across executions as to which artifacts have changed.
  * The primary intended use case is to use this information in a CI pipeline to determine if any snapshot dependencies
  * for a project have updated, and to use this information to determine if a new build and deployment should execute.
- * The exclusions property allows for certain artifacts to be excluded from this file.
+ * The exclusions property allows for certain artifacts to be excluded from this file, in addition to those excluded
+ * by the excludes patterns.
  * The typical use case would be to skip the -api project dependency it the -omod configuration
  */
 @Mojo(name = "hash", requiresDependencyResolution = ResolutionScope.TEST)
 public class HashMojo extends DependencyMojo {
 
-	public static final String SHA1_HEX = "sha1Hex";
-	public static final String MD5_HEX = "md5Hex";
+	public static final String SHA1_HEX = HashAlgorithms.SHA1_HEX;
+	public static final String MD5_HEX = HashAlgorithms.MD5_HEX;
 
+	public static final String CONTENT_MODE = "content";
+	public static final String ZIP_ENTRIES_MODE = "zipEntries";
+
+	/**
+	 * The algorithm used to hash files, one of sha1Hex, md5Hex, sha256Hex, or xxHash64, or the name of any additional
+	 * HashAlgorithm registered through java.util.ServiceLoader.  xxHash64 is much faster but is not cryptographic,
+	 * so it is suited to detecting changes rather than verifying integrity
+	 */
 	@Parameter(property = "algorithm", defaultValue = SHA1_HEX)
 	private String algorithm;
 
+	/**
+	 * Either content, to hash the full contents of each file, or zipEntries, to fingerprint zip archives such as jars
+	 * and omods from only the names, sizes and CRC32s of their entries.  The latter avoids reading the whole archive,
+	 * and ignores entry timestamps, so that an artifact re-packaged with identical contents is not considered changed
+	 */
+	@Parameter(property = "hashMode", defaultValue = CONTENT_MODE)
+	private String hashMode;
+
 	@Parameter(property = "exclusions")
 	private List<Dependency> exclusions;
 
 	@Parameter(property = "outputFile", defaultValue = "${project.build.directory}/hashes.yml")
-	private File outputFile;
+	File outputFile;
+
+	/**
+	 * The number of threads to use when hashing files.  If not specified, one per available processor is used.
+	 */
+	@Parameter(property = "hashThreads", defaultValue = "0")
+	private int hashThreads;
+
+	/**
+	 * If true, the digests of hashed files are cached in hashCacheFile, and only re-computed if the file changes
+	 */
+	@Parameter(property = "useHashCache", defaultValue = "true")
+	private boolean useHashCache;
+
+	/**
+	 * The file in which to cache digests.  This may be shared across projects and builds.
+	 * If not specified, this is hash-cache.txt within the outputDir
+	 */
+	@Parameter(property = "hashCacheFile")
+	private File hashCacheFile;
+
+	/**
+	 * The maximum number of digests to retain in the hash cache, evicting those least recently used
+	 */
+	@Parameter(property = "hashCacheMaxEntries", defaultValue = "10000")
+	private int hashCacheMaxEntries;
+
+	/**
+	 * If true, the checksum files that Maven stores alongside artifacts in the repository (eg. .sha1 or .md5) are
+	 * used rather than reading each artifact, when one exists for the configured algorithm
+	 */
+	@Parameter(property = "useChecksumFiles", defaultValue = "false")
+	private boolean useChecksumFiles;
+
+	/**
+	 * When using checksum files, the percentage of artifacts that should also be hashed to verify the checksum file
+	 */
+	@Parameter(property = "checksumVerifyPercent", defaultValue = "0")
+	private int checksumVerifyPercent;
+
+	private HashingEngine hashingEngine;
 
 	/**
 	 * @throws MojoExecutionException if an error occurs
 	 */
-	public void execute() throws MojoExecutionException {
-		Map<String, String> artifactHashes = new TreeMap<>();
-		Set<Artifact> artifacts = getMavenExecutionEnvironment().getMavenProject().getDependencyArtifacts();
-		for (Artifact a : artifacts) {
-			if (!shouldExclude(a)) {
-				artifactHashes.put(a.toString(), hashFile(a.getFile()));
-			}
+	protected void doExecute() throws MojoExecutionException {
+		hashingEngine = new HashingEngine(HashAlgorithms.forName(algorithm), hashThreads);
+		hashingEngine.setZipFingerprint(isZipEntriesMode());
+		hashingEngine.setUseChecksumFiles(useChecksumFiles);
+		hashingEngine.setChecksumVerifyPercent(checksumVerifyPercent);
+		hashingEngine.setLog(getLog());
+		hashingEngine.setSessionMemo(SessionHashMemo.forSession(mavenSession));
+		hashingEngine.setMetrics(metrics);
+		Map<Artifact, File> artifactFiles;
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.COLLECT)) {
+			artifactFiles = getArtifactFiles();
+		}
+		metrics.add(ExecutionMetrics.ARTIFACTS, artifactFiles.size());
+		UpToDateCheck upToDateCheck = newUpToDateCheck(outputFile);
+		upToDateCheck.add("algorithm", algorithm).add("hashMode", hashMode).add("useChecksumFiles", useChecksumFiles);
+		for (Map.Entry<Artifact, File> e : artifactFiles.entrySet()) {
+			upToDateCheck.addFile(e.getKey().toString(), e.getValue());
+		}
+		if (upToDateCheck.isUpToDate()) {
+			getLog().info(outputFile + " is up to date");
+			return;
+		}
+		HashCache hashCache = null;
+		if (useHashCache) {
+			hashCache = new HashCache(getHashCacheFile(), hashCacheMaxEntries);
+			loadHashCache(hashCache);
+			hashingEngine.setHashCache(hashCache);
+		}
+		Map<File, String> fileHashes;
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.HASH)) {
+			fileHashes = hashFiles(artifactFiles.values());
+		}
+		if (hashCache != null) {
+			saveHashCache(hashCache);
 		}
 		try {
 			if (!getBuildDir().exists()) {
 				getBuildDir().mkdirs();
 			}
-			writeObjectToYamlFile(artifactHashes, outputFile);
+			VersionsDigest digest = writeHashesFile(artifactFiles, fileHashes);
+			writeObjectToYamlFile(digest, VersionsDigest.getDigestFile(outputFile));
+			recordUpToDateCheck(upToDateCheck);
 		}
 		catch (Exception e) {
 			throw new MojoExecutionException("Error writing snapshots to file", e);
@@ -75,42 +164,104 @@ public class HashMojo extends DependencyMojo {
 	}
 
 	/**
-	 * Exclusions should be in the form groupId:artifactId:version
+	 * @return the file of each dependency of the project to hash, leaving out any excluded
 	 */
-	private boolean shouldExclude(Artifact a) {
-		if (exclusions != null) {
-			for (Dependency d : exclusions) {
-				if (d.getGroupId() == null || d.getGroupId().equalsIgnoreCase(a.getGroupId())) {
-					if (d.getArtifactId() == null || d.getArtifactId().equalsIgnoreCase(a.getArtifactId())) {
-						if (d.getVersion() == null || d.getVersion().equalsIgnoreCase(a.getVersion())) {
-							if (d.getClassifier() == null || d.getClassifier().equalsIgnoreCase(a.getClassifier())) {
-								return true;
-							}
-						}
-					}
+	protected Map<Artifact, File> getArtifactFiles() throws MojoExecutionException {
+		Map<Artifact, File> artifactFiles = new LinkedHashMap<>();
+		Set<Artifact> artifacts = mavenProject.getDependencyArtifacts();
+		for (Artifact a : artifacts) {
+			if (getArtifactFilter().accept(a)) {
+				if (a.getFile() == null) {
+					throw new MojoExecutionException("Unable to generate hash for unresolved artifact: " + a);
 				}
+				artifactFiles.put(a, a.getFile());
 			}
 		}
-		return false;
+		return artifactFiles;
 	}
 
 	/**
-	 * Hash the given file, using the specified algorithm property
+	 * Streams the hash of each artifact to the output file, sorted by artifact, computing their digest as they are written
+	 * @return the digest of the hashes, grouped by the groupId that begins each artifact
 	 */
-	private String hashFile(File file) throws MojoExecutionException {
-		try (FileInputStream fis = FileUtils.openInputStream(file)) {
-			if (SHA1_HEX.equalsIgnoreCase(algorithm)) {
-				return DigestUtils.sha1Hex(fis);
+	private VersionsDigest writeHashesFile(final Map<Artifact, File> artifactFiles, final Map<File, String> fileHashes)
+			throws MojoExecutionException {
+		final List<String> keys = new ArrayList<>();
+		final Map<String, File> keyFiles = new HashMap<>();
+		for (Map.Entry<Artifact, File> e : artifactFiles.entrySet()) {
+			if (keyFiles.put(e.getKey().toString(), e.getValue()) == null) {
+				keys.add(e.getKey().toString());
 			}
-			else if (MD5_HEX.equalsIgnoreCase(algorithm)) {
-				return DigestUtils.md5Hex(fis);
+		}
+		Collections.sort(keys);
+		final VersionsDigest.Builder digest = new VersionsDigest.Builder();
+		writeToFile(outputFile, VersionsFormat.YAML, new OutputWriter() {
+			@Override
+			public void write(OutputStream out) throws IOException {
+				try (JsonGenerator generator = VersionsFormat.YAML.createGenerator(out)) {
+					generator.writeStartObject();
+					for (String key : keys) {
+						String hash = fileHashes.get(keyFiles.get(key));
+						generator.writeStringField(key, hash);
+						int separator = key.indexOf(':');
+						String groupId = (separator < 0 ? key : key.substring(0, separator));
+						digest.add(groupId, key.substring(separator + 1), hash);
+					}
+					generator.writeEndObject();
+				}
 			}
-			else {
-				throw new MojoExecutionException("Please specify either " + MD5_HEX + " or " + SHA1_HEX + " as algorithm");
+		});
+		return digest.build();
+	}
+
+	/**
+	 * Exclusions are added to the exclude patterns, with any part not specified matching anything
+	 */
+	@Override
+	protected List<String> getExcludePatterns() {
+		List<String> ret = new ArrayList<>();
+		if (super.getExcludePatterns() != null) {
+			ret.addAll(super.getExcludePatterns());
+		}
+		if (exclusions != null) {
+			for (Dependency d : exclusions) {
+				ret.add(toPattern(d.getGroupId()) + ":" + toPattern(d.getArtifactId()) + ":"
+						+ toPattern(d.getVersion()) + ":" + toPattern(d.getClassifier()));
 			}
 		}
-		catch (Exception e) {
-			throw new MojoExecutionException("Unable to generate MD5 for file: " + file, e);
+		return ret;
+	}
+
+	private String toPattern(String part) {
+		return (part == null ? "*" : part);
+	}
+
+	/**
+	 * Hash the given files in parallel, using the specified algorithm property
+	 */
+	private Map<File, String> hashFiles(Collection<File> files) throws MojoExecutionException {
+		return hashingEngine.hashFiles(new LinkedHashSet<>(files));
+	}
+
+	/**
+	 * @return the configured hashCacheFile, or the default location within the outputDir if not configured
+	 */
+	private File getHashCacheFile() {
+		return (hashCacheFile == null ? new File(outputDir, "hash-cache.txt") : hashCacheFile);
+	}
+
+	/**
+	 * @return true if the hashMode indicates fingerprinting zip entries rather than hashing file contents
+	 */
+	private boolean isZipEntriesMode() throws MojoExecutionException {
+		if (ZIP_ENTRIES_MODE.equalsIgnoreCase(hashMode)) {
+			return true;
+		}
+		else if (CONTENT_MODE.equalsIgnoreCase(hashMode)) {
+			return false;
+		}
+		else {
+			throw new MojoExecutionException("Please specify either " + CONTENT_MODE + " or " + ZIP_ENTRIES_MODE + " as hashMode");
 		}
 	}
 }
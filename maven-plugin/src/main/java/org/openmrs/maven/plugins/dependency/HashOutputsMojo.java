@@ -0,0 +1,216 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * This Mojo hashes the build outputs of the project itself, its compiled classes and its packaged artifact, as a
+ * Merkle tree, and writes the digests to a file next to the versions file.  Like the versions file, its first line
+ * holds the root digest, which only changes if the contents of the outputs change.
+ * It also writes a status of MATCH if the root digest is the same as that of the previous outputs file, DIFFER if not,
+ * or MISSING if there is no previous outputs file, so that a CI pipeline can skip deploying unchanged outputs.
+ * Like the versions file, the outputs file is attached to the project, and the previous outputs file is retrieved
+ * from the Maven repository, so that the comparison does not depend on a build directory that a clean build removes.
+ * Digests of the files within directories are cached like those of the hash goal, so that only files whose size or
+ * last modified time have changed are re-hashed.
+ */
+@Mojo(name = "hash-outputs",
+		defaultPhase = LifecyclePhase.PACKAGE)
+public class HashOutputsMojo extends DependencyMojo {
+
+	public static final String OUTPUTS_TYPE = "yml";
+
+	/**
+	 * The algorithm used to hash files and combine their digests, as for the hash goal
+	 */
+	@Parameter(property = "algorithm", defaultValue = HashAlgorithms.SHA1_HEX)
+	String algorithm;
+
+	/**
+	 * The directory of compiled outputs to hash
+	 */
+	@Parameter(property = "outputsDirectory", defaultValue = "${project.build.outputDirectory}")
+	File outputsDirectory;
+
+	/**
+	 * If true, the packaged artifact of the project is hashed along with the outputsDirectory, if it has been packaged
+	 */
+	@Parameter(property = "includeArtifact", defaultValue = "true")
+	boolean includeArtifact;
+
+	/**
+	 * Either zipEntries, to fingerprint the packaged artifact from the names, sizes and CRC32s of its entries, or
+	 * content, to hash its full contents.  As archives record the time each entry was packaged, the full contents of
+	 * an artifact differ between builds even when its entries do not
+	 */
+	@Parameter(property = "artifactHashMode", defaultValue = HashMojo.ZIP_ENTRIES_MODE)
+	String artifactHashMode;
+
+	/**
+	 * The classifier of the outputs file, written to $outputDir/$outputsClassifier.yml
+	 */
+	@Parameter(property = "outputsClassifier", defaultValue = "outputs")
+	String outputsClassifier;
+
+	/**
+	 * The outputs file to compare with.  If not specified, the outputs file last installed or deployed is retrieved from
+	 * the Maven repository, or if there is none, the outputs file as last written is used
+	 */
+	@Parameter(property = "compareOutputsFrom")
+	File compareOutputsFrom;
+
+	/**
+	 * If true, the outputs file is attached to the project as an artifact, to be installed and deployed along with it
+	 */
+	@Parameter(property = "attach", defaultValue = "true")
+	boolean attach;
+
+	/**
+	 * The number of threads used to walk directories and hash files.  If not specified, one per available processor
+	 */
+	@Parameter(property = "hashThreads", defaultValue = "0")
+	int hashThreads;
+
+	/**
+	 * If true, the digests of hashed files are cached in hashCacheFile, and only re-computed if the file changes
+	 */
+	@Parameter(property = "useHashCache", defaultValue = "true")
+	boolean useHashCache;
+
+	/**
+	 * The file in which to cache digests.  If not specified, this is outputs-hash-cache.txt within the outputDir
+	 */
+	@Parameter(property = "hashCacheFile")
+	File hashCacheFile;
+
+	/**
+	 * The maximum number of digests to retain in the hash cache, evicting those least recently used
+	 */
+	@Parameter(property = "hashCacheMaxEntries", defaultValue = "100000")
+	int hashCacheMaxEntries;
+
+	@Parameter(property = "missingStatus", defaultValue = "MISSING")
+	String missingStatus;
+
+	@Parameter(property = "differStatus", defaultValue = "DIFFER")
+	String differStatus;
+
+	@Parameter(property = "matchStatus", defaultValue = "MATCH")
+	String matchStatus;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	@Override
+	protected void doExecute() throws MojoExecutionException {
+		HashAlgorithm hashAlgorithm = HashAlgorithms.forName(algorithm);
+		HashingEngine fileEngine = new HashingEngine(hashAlgorithm, hashThreads);
+		fileEngine.setLog(getLog());
+		fileEngine.setMetrics(metrics);
+		HashingEngine archiveEngine = new HashingEngine(hashAlgorithm, hashThreads);
+		archiveEngine.setZipFingerprint(isZipEntriesMode());
+		archiveEngine.setLog(getLog());
+		archiveEngine.setMetrics(metrics);
+		HashCache hashCache = null;
+		if (useHashCache) {
+			hashCache = new HashCache(getHashCacheFile(), hashCacheMaxEntries);
+			loadHashCache(hashCache);
+			fileEngine.setHashCache(hashCache);
+			archiveEngine.setHashCache(hashCache);
+		}
+		MerkleTreeHasher hasher = new MerkleTreeHasher(fileEngine, hashAlgorithm, hashThreads);
+		hasher.setArchiveEngine(archiveEngine);
+		OutputsDigest digest;
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.HASH)) {
+			digest = hasher.hash(getOutputs());
+		}
+		if (hashCache != null) {
+			saveHashCache(hashCache);
+		}
+		getLog().info("Hashed " + digest.getOutputs().keySet() + " with root digest " + digest.getRoot());
+
+		File outputsFile = getOutputsFile();
+		String previousRoot = readRootDigest(compareOutputsFrom == null ? retrievePreviousOutputsFile() : compareOutputsFrom);
+		if (previousRoot == null) {
+			writeStringToFile(missingStatus, getOutputsStatusFile());
+		}
+		else if (previousRoot.equals(digest.getRoot())) {
+			writeStringToFile(matchStatus, getOutputsStatusFile());
+		}
+		else {
+			writeStringToFile(differStatus, getOutputsStatusFile());
+		}
+		if (!digest.getRoot().equals(readRootDigest(outputsFile))) {
+			writeObjectToYamlFile(digest, outputsFile, VersionsDigest.ROOT_DIGEST_HEADER + digest.getRoot());
+		}
+		if (attach) {
+			projectHelper.attachArtifact(mavenProject, OUTPUTS_TYPE, outputsClassifier, outputsFile);
+		}
+	}
+
+	/**
+	 * @return the outputs file last installed or deployed, retrieved from the Maven repository in the same way as the
+	 * versions artifact, or if there is none, the outputs file as last written
+	 */
+	protected File retrievePreviousOutputsFile() {
+		File ret = retrieveArtifact(outputsClassifier, OUTPUTS_TYPE, false);
+		if (ret == null) {
+			getLog().info("No " + outputsClassifier + " artifact was found in the Maven repository, using " + getOutputsFile());
+			return getOutputsFile();
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the outputs to hash by name, being the outputsDirectory and the packaged artifact if it is a file
+	 */
+	protected Map<String, File> getOutputs() {
+		Map<String, File> ret = new LinkedHashMap<>();
+		ret.put("classes", outputsDirectory);
+		File artifactFile = (mavenProject.getArtifact() == null ? null : mavenProject.getArtifact().getFile());
+		if (includeArtifact && artifactFile != null && artifactFile.isFile()) {
+			ret.put("artifact", artifactFile);
+		}
+		return ret;
+	}
+
+	public File getOutputsFile() {
+		return new File(outputDir, outputsClassifier + ".yml");
+	}
+
+	public File getOutputsStatusFile() {
+		return new File(outputDir, outputsClassifier + "-status.txt");
+	}
+
+	private File getHashCacheFile() {
+		return (hashCacheFile == null ? new File(outputDir, "outputs-hash-cache.txt") : hashCacheFile);
+	}
+
+	private boolean isZipEntriesMode() throws MojoExecutionException {
+		if (HashMojo.ZIP_ENTRIES_MODE.equalsIgnoreCase(artifactHashMode)) {
+			return true;
+		}
+		else if (HashMojo.CONTENT_MODE.equalsIgnoreCase(artifactHashMode)) {
+			return false;
+		}
+		else {
+			throw new MojoExecutionException("Please specify either " + HashMojo.CONTENT_MODE + " or "
+					+ HashMojo.ZIP_ENTRIES_MODE + " as artifactHashMode");
+		}
+	}
+}
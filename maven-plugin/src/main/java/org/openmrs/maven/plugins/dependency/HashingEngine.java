@@ -0,0 +1,321 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+/**
+ * Computes digests of files, spreading the work across a fixed pool of worker threads.
+ * Files are read through a FileChannel into a direct buffer owned by each worker, so that large archives
+ * are streamed straight from the OS into the digest without intermediate heap copies.
+ */
+public class HashingEngine {
+
+	public static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final HashAlgorithm algorithm;
+
+	private final int threads;
+
+	private HashCache hashCache;
+
+	private SessionHashMemo sessionMemo;
+
+	private boolean zipFingerprint = false;
+
+	private boolean useChecksumFiles = false;
+
+	private int checksumVerifyPercent = 0;
+
+	private Log log = new SystemStreamLog();
+
+	private ExecutionMetrics metrics;
+
+	private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * @param algorithm the algorithm used to compute digests
+	 * @param threads the number of worker threads to use, or a value less than 1 to use one per available processor
+	 */
+	public HashingEngine(HashAlgorithm algorithm, int threads) {
+		this.algorithm = algorithm;
+		this.threads = (threads < 1 ? Runtime.getRuntime().availableProcessors() : threads);
+	}
+
+	/**
+	 * Hashes all of the given files in parallel.  Each file is looked up in the session memo and then the hash cache,
+	 * if set, and is only read if a digest is in neither.
+	 * @return a Map from each file to its hex-encoded digest
+	 */
+	public Map<File, String> hashFiles(Collection<File> files) throws MojoExecutionException {
+		Map<File, String> ret = new LinkedHashMap<>();
+		if (files.isEmpty()) {
+			return ret;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+		try {
+			Map<File, FutureTask<String>> tasks = new LinkedHashMap<>();
+			for (final File file : files) {
+				FutureTask<String> task = new FutureTask<>(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return getCachedOrResolveHash(file);
+					}
+				});
+				if (sessionMemo != null) {
+					task = sessionMemo.register(file, getMemoKey(), task);
+				}
+				// A task registered by another module may not have started yet, and running a started task is a no-op
+				executor.execute(task);
+				tasks.put(file, task);
+			}
+			for (Map.Entry<File, FutureTask<String>> e : tasks.entrySet()) {
+				try {
+					String hash = e.getValue().get();
+					// A digest memoized from checksum files was not computed, so is never added to the cache
+					if (hashCache != null && !isUsingChecksumFiles() && hashCache.get(e.getKey(), getCacheKey()) == null) {
+						hashCache.put(e.getKey(), getCacheKey(), hash);
+					}
+					ret.put(e.getKey(), hash);
+				}
+				catch (ExecutionException ee) {
+					if (sessionMemo != null) {
+						sessionMemo.remove(e.getKey(), getMemoKey(), e.getValue());
+					}
+					throw new MojoExecutionException("Unable to generate hash for file: " + e.getKey(), ee.getCause());
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while hashing files", e);
+		}
+		finally {
+			executor.shutdown();
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the digest of the given file from the hash cache if set, otherwise from its checksum file if enabled and
+	 * available, or otherwise resolved and added to the cache.  Digests read from checksum files are never cached, as
+	 * they were not computed from the file, so are re-read, and may be re-verified, by every build
+	 */
+	protected String getCachedOrResolveHash(File file) throws IOException {
+		String hash = (hashCache == null ? null : hashCache.get(file, getCacheKey()));
+		if (metrics != null && hashCache != null) {
+			metrics.increment(hash == null ? ExecutionMetrics.HASH_CACHE_MISSES : ExecutionMetrics.HASH_CACHE_HITS);
+		}
+		if (hash != null) {
+			return hash;
+		}
+		String checksum = (isUsingChecksumFiles() ? readChecksumFile(file) : null);
+		if (checksum != null && ThreadLocalRandom.current().nextInt(100) >= checksumVerifyPercent) {
+			return checksum;
+		}
+		long start = System.nanoTime();
+		hash = resolveHash(file);
+		if (metrics != null) {
+			metrics.recordFile(file, file.length(), System.nanoTime() - start);
+			metrics.addBytes(ExecutionMetrics.HASH, file.length());
+		}
+		if (checksum != null && !checksum.equals(hash)) {
+			log.warn("Checksum file for " + file + " does not match its contents, using computed " + hash);
+		}
+		if (hashCache != null) {
+			hashCache.put(file, getCacheKey(), hash);
+		}
+		return hash;
+	}
+
+	/**
+	 * Computes the digest of a file on the calling thread.  In zip fingerprint mode, this is the fingerprint of the
+	 * zip entries, and otherwise the digest of the file contents
+	 */
+	public String resolveHash(File file) throws IOException {
+		return (zipFingerprint ? fingerprintZip(file) : hashFile(file));
+	}
+
+	/**
+	 * Maven repositories store checksums alongside each artifact, in files named after the artifact with an
+	 * extension of the algorithm checksum extension, eg. artifact.jar.sha1 or artifact.jar.md5.
+	 * These typically contain only the hex digest, though some tools append the file name after whitespace.
+	 * A checksum file older than the file is ignored, as the file has been replaced since, eg. by a local install of a
+	 * SNAPSHOT that was downloaded along with its checksum file, which the install does not rewrite
+	 * @return the digest from the checksum file for the given file, or null if there is no valid checksum file
+	 */
+	protected String readChecksumFile(File file) throws IOException {
+		File checksumFile = new File(file.getPath() + "." + algorithm.getChecksumExtension());
+		if (!checksumFile.isFile()) {
+			return null;
+		}
+		if (checksumFile.lastModified() < file.lastModified()) {
+			log.debug("Ignoring checksum file " + checksumFile + " older than " + file);
+			return null;
+		}
+		String contents = new String(Files.readAllBytes(checksumFile.toPath()), StandardCharsets.US_ASCII).trim();
+		String checksum = contents.split("\\s+", 2)[0].toLowerCase();
+		if (checksum.length() != algorithm.getDigestLength() * 2 || !checksum.matches("[0-9a-f]+")) {
+			log.debug("Ignoring invalid checksum file " + checksumFile);
+			return null;
+		}
+		return checksum;
+	}
+
+	/**
+	 * Hashes a single file on the calling thread
+	 * @return the hex-encoded digest of the file contents
+	 */
+	public String hashFile(File file) throws IOException {
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		ByteBuffer buffer = buffers.get();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			buffer.clear();
+			while (channel.read(buffer) != -1) {
+				buffer.flip();
+				hasher.update(buffer);
+				buffer.clear();
+			}
+		}
+		return hasher.hexDigest();
+	}
+
+	/**
+	 * Computes a fingerprint of a zip archive (eg. jar, omod, or war) from only its central directory, which lists the
+	 * name, size, and CRC32 of every entry.  Entries are sorted by name, and timestamps are ignored, so an archive that
+	 * is re-packaged with identical contents has an identical fingerprint.  Files that are not zip archives are hashed.
+	 * @return the hex-encoded digest of the sorted entry names, sizes and CRC32s
+	 */
+	public String fingerprintZip(File file) throws IOException {
+		Map<String, ZipEntry> entries = new TreeMap<>();
+		try (ZipFile zipFile = new ZipFile(file)) {
+			for (Enumeration<? extends ZipEntry> e = zipFile.entries(); e.hasMoreElements();) {
+				ZipEntry entry = e.nextElement();
+				entries.put(entry.getName(), entry);
+			}
+		}
+		catch (ZipException e) {
+			return hashFile(file);
+		}
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		for (ZipEntry entry : entries.values()) {
+			String line = entry.getName() + "\t" + entry.getSize() + "\t" + Long.toHexString(entry.getCrc()) + "\n";
+			hasher.update(line.getBytes(StandardCharsets.UTF_8));
+		}
+		return hasher.hexDigest();
+	}
+
+	/**
+	 * @return the key under which digests computed by this engine are cached, distinguishing algorithm and mode
+	 */
+	protected String getCacheKey() {
+		return (zipFingerprint ? algorithm.getName() + "-zip" : algorithm.getName());
+	}
+
+	/**
+	 * @return the key under which digests are memoized for the session, which differs when checksum files are used,
+	 * so that modules that do not use them are never given a digest read from a checksum file
+	 */
+	protected String getMemoKey() {
+		return (isUsingChecksumFiles() ? getCacheKey() + "-checksum" : getCacheKey());
+	}
+
+	/**
+	 * @return true if digests are read from checksum files, which are not used for zip fingerprints
+	 */
+	private boolean isUsingChecksumFiles() {
+		return useChecksumFiles && !zipFingerprint && algorithm.getChecksumExtension() != null;
+	}
+
+	/**
+	 * @param hashCache the cache to consult before hashing each file, and to add newly computed digests to
+	 */
+	public void setHashCache(HashCache hashCache) {
+		this.hashCache = hashCache;
+	}
+
+	/**
+	 * @param sessionMemo the memo of digests already computed by other modules of the build, to share results with
+	 */
+	public void setSessionMemo(SessionHashMemo sessionMemo) {
+		this.sessionMemo = sessionMemo;
+	}
+
+	/**
+	 * @param zipFingerprint if true, zip archives are fingerprinted from their central directory rather than hashed
+	 */
+	public void setZipFingerprint(boolean zipFingerprint) {
+		this.zipFingerprint = zipFingerprint;
+	}
+
+	/**
+	 * @param useChecksumFiles if true, the digests recorded in checksum files next to each file are used when available
+	 */
+	public void setUseChecksumFiles(boolean useChecksumFiles) {
+		this.useChecksumFiles = useChecksumFiles;
+	}
+
+	/**
+	 * @param checksumVerifyPercent the percentage of files using checksum files that are also hashed to verify them
+	 */
+	public void setChecksumVerifyPercent(int checksumVerifyPercent) {
+		this.checksumVerifyPercent = checksumVerifyPercent;
+	}
+
+	/**
+	 * @param log the log to which any warnings are written
+	 */
+	public void setLog(Log log) {
+		this.log = log;
+	}
+
+	/**
+	 * @param metrics the metrics to which the bytes and time of each file hashed, and cache hits and misses, are added
+	 */
+	public void setMetrics(ExecutionMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the number of worker threads this engine will use
+	 */
+	public int getThreads() {
+		return threads;
+	}
+}
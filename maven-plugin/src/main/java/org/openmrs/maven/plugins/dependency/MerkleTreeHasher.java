@@ -0,0 +1,197 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Computes a Merkle tree of digests over files and directories.  The digest of a file is computed by a HashingEngine,
+ * so a digest cached for a file whose size and last modified time are unchanged is reused rather than re-computed.
+ * The digest of a directory is the digest of the sorted names and digests of its children, with directory names
+ * ending in /, so that two directories have the same digest if and only if their contents are the same.
+ * Directories are walked, and files are hashed, by the tasks of a fork/join pool.
+ */
+public class MerkleTreeHasher {
+
+	private final HashingEngine fileEngine;
+
+	private final HashAlgorithm algorithm;
+
+	private final int parallelism;
+
+	private HashingEngine archiveEngine;
+
+	/**
+	 * @param fileEngine the engine used to compute, or look up the cached digest of, each file
+	 * @param algorithm the algorithm used to combine the digests of the children of each directory
+	 * @param parallelism the number of threads of the fork/join pool, or a value less than 1 for one per processor
+	 */
+	public MerkleTreeHasher(HashingEngine fileEngine, HashAlgorithm algorithm, int parallelism) {
+		this.fileEngine = fileEngine;
+		this.algorithm = algorithm;
+		this.parallelism = (parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism);
+	}
+
+	/**
+	 * Hashes each of the passed outputs, which may be files or directories, as the children of a single root
+	 * @param outputs the outputs to hash by name, leaving out any that do not exist
+	 * @return the root digest, the digest of each output, and the digest of every directory within them
+	 */
+	public OutputsDigest hash(Map<String, File> outputs) throws MojoExecutionException {
+		final Map<String, String> directories = new ConcurrentHashMap<>();
+		final Map<String, ForkJoinTask<String>> tasks = new TreeMap<>();
+		for (Map.Entry<String, File> e : outputs.entrySet()) {
+			File file = e.getValue();
+			if (file == null || !file.exists()) {
+				continue;
+			}
+			if (file.isDirectory()) {
+				tasks.put(e.getKey() + "/", new DirectoryTask(file, e.getKey() + "/", directories));
+			}
+			else {
+				tasks.put(e.getKey(), new FileTask(archiveEngine == null ? fileEngine : archiveEngine, file));
+			}
+		}
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			Map<String, String> digests = pool.invoke(new RecursiveTask<Map<String, String>>() {
+				@Override
+				protected Map<String, String> compute() {
+					ForkJoinTask.invokeAll(tasks.values());
+					Map<String, String> ret = new TreeMap<>();
+					for (Map.Entry<String, ForkJoinTask<String>> task : tasks.entrySet()) {
+						ret.put(task.getKey(), task.getValue().join());
+					}
+					return ret;
+				}
+			});
+			OutputsDigest ret = new OutputsDigest();
+			ret.setAlgorithm(algorithm.getName());
+			ret.setRoot(combine(digests));
+			ret.setOutputs(digests);
+			ret.setDirectories(directories);
+			return ret;
+		}
+		catch (HashException e) {
+			throw new MojoExecutionException("Unable to hash outputs", e.getCause());
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * @param archiveEngine the engine used for outputs that are files rather than directories, such as a packaged
+	 * archive, which may fingerprint archives differently from the files within directories
+	 */
+	public void setArchiveEngine(HashingEngine archiveEngine) {
+		this.archiveEngine = archiveEngine;
+	}
+
+	/**
+	 * @return the digest of the passed names and digests, which must be sorted by name
+	 */
+	private String combine(Map<String, String> children) {
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		for (Map.Entry<String, String> child : children.entrySet()) {
+			hasher.update((child.getKey() + "\t" + child.getValue() + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		return hasher.hexDigest();
+	}
+
+	/**
+	 * Hashes a single file
+	 */
+	private class FileTask extends RecursiveTask<String> {
+
+		private final HashingEngine engine;
+
+		private final File file;
+
+		FileTask(HashingEngine engine, File file) {
+			this.engine = engine;
+			this.file = file;
+		}
+
+		@Override
+		protected String compute() {
+			try {
+				return engine.getCachedOrResolveHash(file);
+			}
+			catch (IOException e) {
+				throw new HashException(new IOException("Unable to hash " + file, e));
+			}
+		}
+	}
+
+	/**
+	 * Forks a task for each child of a directory, and combines their digests once all have completed
+	 */
+	private class DirectoryTask extends RecursiveTask<String> {
+
+		private final File dir;
+
+		private final String path;
+
+		private final Map<String, String> directories;
+
+		DirectoryTask(File dir, String path, Map<String, String> directories) {
+			this.dir = dir;
+			this.path = path;
+			this.directories = directories;
+		}
+
+		@Override
+		protected String compute() {
+			File[] children = dir.listFiles();
+			if (children == null) {
+				throw new HashException(new IOException("Unable to list " + dir));
+			}
+			Map<String, ForkJoinTask<String>> tasks = new TreeMap<>();
+			for (File child : children) {
+				if (child.isDirectory()) {
+					String name = child.getName() + "/";
+					tasks.put(name, new DirectoryTask(child, path + name, directories));
+				}
+				else {
+					tasks.put(child.getName(), new FileTask(fileEngine, child));
+				}
+			}
+			ForkJoinTask.invokeAll(tasks.values());
+			Map<String, String> digests = new TreeMap<>();
+			for (Map.Entry<String, ForkJoinTask<String>> task : tasks.entrySet()) {
+				digests.put(task.getKey(), task.getValue().join());
+			}
+			String digest = combine(digests);
+			directories.put(path, digest);
+			return digest;
+		}
+	}
+
+	/**
+	 * Carries an IOException out of a fork/join task, which cannot throw checked exceptions
+	 */
+	private static class HashException extends RuntimeException {
+
+		HashException(IOException cause) {
+			super(cause);
+		}
+	}
+}
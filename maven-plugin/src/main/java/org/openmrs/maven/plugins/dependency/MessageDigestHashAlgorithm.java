@@ -0,0 +1,88 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * A HashAlgorithm backed by a java.security.MessageDigest, eg. SHA-1, MD5 or SHA-256
+ */
+public class MessageDigestHashAlgorithm implements HashAlgorithm {
+
+	private final String name;
+
+	private final String digestAlgorithm;
+
+	private final String checksumExtension;
+
+	private final int digestLength;
+
+	/**
+	 * @param name the name used to configure this algorithm
+	 * @param digestAlgorithm the java.security.MessageDigest algorithm name
+	 * @param checksumExtension the extension of repository checksum files for this algorithm, or null if none
+	 * @throws IllegalArgumentException if the digest algorithm is not supported by this JVM
+	 */
+	public MessageDigestHashAlgorithm(String name, String digestAlgorithm, String checksumExtension) {
+		this.name = name;
+		this.digestAlgorithm = digestAlgorithm;
+		this.checksumExtension = checksumExtension;
+		this.digestLength = newDigest().getDigestLength();
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public int getDigestLength() {
+		return digestLength;
+	}
+
+	@Override
+	public String getChecksumExtension() {
+		return checksumExtension;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		final MessageDigest digest = newDigest();
+		return new Hasher() {
+			@Override
+			public void update(ByteBuffer buffer) {
+				digest.update(buffer);
+			}
+
+			@Override
+			public void update(byte[] bytes) {
+				digest.update(bytes);
+			}
+
+			@Override
+			public String hexDigest() {
+				return Hex.encodeHexString(digest.digest());
+			}
+		};
+	}
+
+	private MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance(digestAlgorithm);
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalArgumentException("Unsupported digest algorithm: " + digestAlgorithm, e);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * The Merkle tree of digests of the build outputs of a project, as computed by MerkleTreeHasher.
+ * Outputs and directories that are directories are named with a trailing /, and directories are named by their path
+ * from the output that contains them, so that the directories that differ between two builds can be found.
+ */
+@JsonPropertyOrder({ "algorithm", "root", "outputs", "directories" })
+public class OutputsDigest {
+
+	private String algorithm;
+
+	private String root;
+
+	private Map<String, String> outputs = new TreeMap<>();
+
+	private Map<String, String> directories = new TreeMap<>();
+
+	public String getAlgorithm() {
+		return algorithm;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		this.algorithm = algorithm;
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	public void setRoot(String root) {
+		this.root = root;
+	}
+
+	public Map<String, String> getOutputs() {
+		return outputs;
+	}
+
+	public void setOutputs(Map<String, String> outputs) {
+		this.outputs = new TreeMap<>(outputs);
+	}
+
+	public Map<String, String> getDirectories() {
+		return directories;
+	}
+
+	public void setDirectories(Map<String, String> directories) {
+		this.directories = new TreeMap<>(directories);
+	}
+}
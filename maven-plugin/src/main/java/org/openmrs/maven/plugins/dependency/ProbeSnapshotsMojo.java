@@ -0,0 +1,209 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.repository.metadata.Metadata;
+import org.apache.maven.artifact.repository.metadata.Snapshot;
+import org.apache.maven.artifact.repository.metadata.io.xpp3.MetadataXpp3Reader;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.metadata.DefaultMetadata;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.repository.RepositoryPolicy;
+import org.eclipse.aether.resolution.MetadataRequest;
+import org.eclipse.aether.resolution.MetadataResult;
+
+/**
+ * This Mojo provides a cheap way to detect whether any SNAPSHOT dependency has changed since the last versions file
+ * was created, without resolving any dependencies.  It reads the SNAPSHOT entries from the last versions file, which by
+ * default is the latest installed or deployed versions artifact, and fetches only the maven-metadata.xml of each of
+ * these from the remote repositories, concurrently, to determine the latest build of each SNAPSHOT.
+ * The status is written to the same versions-diff-status.txt file as the compare-versions goal, and if any SNAPSHOT
+ * has a newer build, the details are written to versions-diff.yml.
+ * Note that this only detects new builds of SNAPSHOTs, and not changes made to the dependencies in the pom itself.
+ * SNAPSHOTs recorded without a timestamp and build number are not probed, as the build they were recorded at is unknown.
+ */
+@Mojo(name = "probe-snapshots", defaultPhase = LifecyclePhase.GENERATE_RESOURCES)
+public class ProbeSnapshotsMojo extends DependencyMojo {
+
+	/**
+	 * The versions file listing the SNAPSHOT versions to probe.
+	 * If not specified, the latest versions artifact is retrieved from the Maven repository
+	 */
+	@Parameter(property = "versionsFile")
+	File versionsFile;
+
+	/**
+	 * The number of maven-metadata.xml files to fetch concurrently
+	 */
+	@Parameter(property = "probeThreads", defaultValue = "8")
+	int probeThreads;
+
+	@Parameter(property = "missingStatus", defaultValue = "MISSING")
+	String missingStatus;
+
+	@Parameter(property = "differStatus", defaultValue = "DIFFER")
+	String differStatus;
+
+	@Parameter(property = "matchStatus", defaultValue = "MATCH")
+	String matchStatus;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	protected void doExecute() throws MojoExecutionException {
+		File file = (versionsFile == null ? retrieveVersionsArtifact() : versionsFile);
+		if (file == null || !file.exists()) {
+			writeStringToFile(missingStatus, getDiffStatusFile());
+			return;
+		}
+		try {
+			Map<String, Map<String, String>> recorded;
+			try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.READ)) {
+				metrics.addBytes(ExecutionMetrics.READ, file.length());
+				recorded = getSnapshotVersions(file);
+			}
+			Map<String, Map<String, String>> latest;
+			try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.RETRIEVE)) {
+				latest = getLatestSnapshotVersions(recorded);
+			}
+			VersionsDiff diff = diffVersions(new VersionsDiff.MapSource(recorded), new VersionsDiff.MapSource(latest));
+			writeVersionsComparison(diff, matchStatus, differStatus);
+		}
+		catch (MojoExecutionException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("An error occurred probing snapshot versions", e);
+		}
+	}
+
+	/**
+	 * SNAPSHOTs recorded without a timestamp and build number are left out, as the build they were recorded at is
+	 * unknown, and comparing them with the latest remote build would report every run as differing
+	 * @return the SNAPSHOT entries from the passed versions file that are recorded with a timestamp and build number
+	 */
+	protected Map<String, Map<String, String>> getSnapshotVersions(File file) throws Exception {
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		int unknownBuilds = 0;
+		try (VersionsDiff.EntryIterator entries = getArtifactFilter().filter(new VersionsDiff.FileSource(file)).open()) {
+			for (VersionsDiff.Entry e = entries.next(); e != null; e = entries.next()) {
+				if (!VersionsDiff.isSnapshot(e.version)) {
+					continue;
+				}
+				if (e.version.equals(VersionsDiff.getBaseVersion(e.version))) {
+					getLog().debug("Not probing " + e.groupId + ":" + e.artifactId + ":" + e.version
+							+ ", as the build it was recorded at is unknown");
+					unknownBuilds++;
+				}
+				else {
+					putVersion(ret, e.groupId, e.artifactId, e.version);
+				}
+			}
+		}
+		if (unknownBuilds > 0) {
+			getLog().info("Not probing " + unknownBuilds + " snapshots recorded without a timestamp and build number");
+		}
+		return ret;
+	}
+
+	/**
+	 * Fetches the maven-metadata.xml for each of the passed SNAPSHOT versions from every remote repository that
+	 * allows snapshots, bypassing the usual update policy so that the remote repositories are always checked
+	 * @return the latest build of each of the passed SNAPSHOTs, or the passed version if no build could be found
+	 */
+	protected Map<String, Map<String, String>> getLatestSnapshotVersions(Map<String, Map<String, String>> snapshots)
+			throws Exception {
+		DefaultRepositorySystemSession session = new DefaultRepositorySystemSession(mavenSession.getRepositorySession());
+		session.setUpdatePolicy(RepositoryPolicy.UPDATE_POLICY_ALWAYS);
+		session.setConfigProperty("aether.metadataResolver.threads", probeThreads);
+
+		List<MetadataRequest> requests = new ArrayList<>();
+		for (Map.Entry<String, Map<String, String>> group : snapshots.entrySet()) {
+			for (Map.Entry<String, String> artifact : group.getValue().entrySet()) {
+				String baseVersion = VersionsDiff.getBaseVersion(artifact.getValue());
+				DefaultMetadata metadata = new DefaultMetadata(group.getKey(), artifact.getKey(), baseVersion,
+						"maven-metadata.xml", org.eclipse.aether.metadata.Metadata.Nature.SNAPSHOT);
+				for (RemoteRepository repository : mavenProject.getRemoteProjectRepositories()) {
+					if (repository.getPolicy(true).isEnabled()) {
+						MetadataRequest request = new MetadataRequest(metadata, repository, null);
+						request.setFavorLocalRepository(false);
+						requests.add(request);
+					}
+				}
+			}
+		}
+		getLog().info("Probing " + requests.size() + " snapshot metadata files");
+
+		Map<String, Map<String, String>> latestTimestamps = new TreeMap<>();
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		for (Map.Entry<String, Map<String, String>> group : snapshots.entrySet()) {
+			for (Map.Entry<String, String> artifact : group.getValue().entrySet()) {
+				putVersion(ret, group.getKey(), artifact.getKey(), artifact.getValue());
+			}
+		}
+		for (MetadataResult result : repositorySystem.resolveMetadata(session, requests)) {
+			org.eclipse.aether.metadata.Metadata metadata = result.getMetadata();
+			if (metadata == null || metadata.getFile() == null || !metadata.getFile().exists()) {
+				getLog().debug("No metadata found for " + result.getRequest().getMetadata() + " in "
+						+ result.getRequest().getRepository());
+				continue;
+			}
+			Snapshot snapshot = readSnapshot(metadata.getFile());
+			if (snapshot == null || snapshot.getTimestamp() == null) {
+				continue;
+			}
+			String groupId = metadata.getGroupId();
+			String artifactId = metadata.getArtifactId();
+			String previousTimestamp = getVersion(latestTimestamps, groupId, artifactId);
+			if (previousTimestamp == null || previousTimestamp.compareTo(snapshot.getTimestamp()) < 0) {
+				putVersion(latestTimestamps, groupId, artifactId, snapshot.getTimestamp());
+				String prefix = metadata.getVersion().substring(0, metadata.getVersion().length() - "SNAPSHOT".length());
+				putVersion(ret, groupId, artifactId, prefix + snapshot.getTimestamp() + "-" + snapshot.getBuildNumber());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the snapshot details from the passed maven-metadata.xml file
+	 */
+	private Snapshot readSnapshot(File metadataFile) throws Exception {
+		try (InputStream in = new FileInputStream(metadataFile)) {
+			Metadata metadata = new MetadataXpp3Reader().read(in, false);
+			return (metadata.getVersioning() == null ? null : metadata.getVersioning().getSnapshot());
+		}
+	}
+
+	private String getVersion(Map<String, Map<String, String>> versions, String groupId, String artifactId) {
+		Map<String, String> artifacts = versions.get(groupId);
+		return (artifacts == null ? null : artifacts.get(artifactId));
+	}
+
+	private void putVersion(Map<String, Map<String, String>> versions, String groupId, String artifactId, String version) {
+		Map<String, String> artifacts = versions.get(groupId);
+		if (artifacts == null) {
+			artifacts = new TreeMap<>();
+			versions.put(groupId, artifacts);
+		}
+		artifacts.put(artifactId, version);
+	}
+}
@@ -0,0 +1,168 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Supports the aggregate goals, which do their work once for the whole reactor rather than once per module.
+ * An aggregate goal may be bound to every module, but only executes in the last project of the reactor, by which
+ * time every module has been loaded.  The work for each module, or for each unique artifact across all modules,
+ * is done in parallel.
+ */
+public class ReactorAggregator {
+
+	private final MavenSession session;
+
+	private final int threads;
+
+	/**
+	 * @param session the session of the build
+	 * @param threads the number of tasks to run concurrently, or 0 for one per available processor
+	 */
+	public ReactorAggregator(MavenSession session, int threads) {
+		this.session = session;
+		this.threads = (threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @return true if the passed project is the last in the reactor, and so the one in which aggregate goals execute
+	 */
+	public boolean isLastProject(MavenProject project) {
+		List<MavenProject> projects = getProjects();
+		return projects.isEmpty() || projects.get(projects.size() - 1).getId().equals(project.getId());
+	}
+
+	/**
+	 * @return the projects of the reactor, in the order they are built
+	 */
+	public List<MavenProject> getProjects() {
+		return session.getProjects();
+	}
+
+	/**
+	 * @return the groupId:artifactId of each project of the reactor
+	 */
+	public Set<String> getProjectKeys() {
+		Set<String> ret = new HashSet<>();
+		for (MavenProject project : getProjects()) {
+			ret.add(project.getGroupId() + ":" + project.getArtifactId());
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the dependencies of every project of the reactor in the given scopes, leaving out those on other projects
+	 * of the reactor, with each dependency shared by several projects included once, along with the first project
+	 * that declares it
+	 * @param scopes the scopes of the dependencies to include, or null or empty for all scopes
+	 */
+	public List<ProjectDependency> getUniqueDependencies(Collection<String> scopes) {
+		Set<String> projectKeys = getProjectKeys();
+		Map<String, ProjectDependency> ret = new LinkedHashMap<>();
+		for (MavenProject project : getProjects()) {
+			for (Dependency d : project.getDependencies()) {
+				if (scopes != null && !scopes.isEmpty() && !scopes.contains(d.getScope())) {
+					continue;
+				}
+				if (projectKeys.contains(d.getGroupId() + ":" + d.getArtifactId())) {
+					continue;
+				}
+				String key = d.getManagementKey() + ":" + d.getVersion();
+				if (!ret.containsKey(key)) {
+					ret.put(key, new ProjectDependency(project, d));
+				}
+			}
+		}
+		return new ArrayList<>(ret.values());
+	}
+
+	/**
+	 * Runs the passed task for each of the passed items concurrently
+	 * @return the result for each item, in the order of the items
+	 */
+	public <T, R> List<R> forEach(Collection<T> items, final Task<T, R> task) throws MojoExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, items.size())));
+		try {
+			List<Future<R>> futures = new ArrayList<>();
+			for (final T item : items) {
+				futures.add(executor.submit(new Callable<R>() {
+					@Override
+					public R call() throws Exception {
+						return task.run(item);
+					}
+				}));
+			}
+			List<R> ret = new ArrayList<>();
+			for (Future<R> future : futures) {
+				ret.add(future.get());
+			}
+			return ret;
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof MojoExecutionException) {
+				throw (MojoExecutionException) e.getCause();
+			}
+			throw new MojoExecutionException("An error occurred aggregating the reactor", e.getCause());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MojoExecutionException("Interrupted while aggregating the reactor", e);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * A dependency, along with the project that declares it
+	 */
+	public static class ProjectDependency {
+
+		private final MavenProject project;
+		private final Dependency dependency;
+
+		public ProjectDependency(MavenProject project, Dependency dependency) {
+			this.project = project;
+			this.dependency = dependency;
+		}
+
+		public MavenProject getProject() {
+			return project;
+		}
+
+		public Dependency getDependency() {
+			return dependency;
+		}
+	}
+
+	/**
+	 * A task run for each project or artifact
+	 */
+	public interface Task<T, R> {
+		R run(T item) throws Exception;
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * An in-memory record of the file digests computed during a single build, shared by every module of the reactor
+ * through the data of the repository session.  Each digest is held as a FutureTask, which is registered before it
+ * is run, so that when modules built in parallel need the same file it is only hashed once, with the others waiting
+ * on the result rather than hashing it again.
+ */
+public class SessionHashMemo {
+
+	private static final String SESSION_KEY = SessionHashMemo.class.getName();
+
+	private final ConcurrentMap<String, FutureTask<String>> tasks = new ConcurrentHashMap<>();
+
+	/**
+	 * @return the memo attached to the given session, attaching a new one if there is none yet
+	 */
+	public static SessionHashMemo forSession(MavenSession session) {
+		if (session == null || session.getRepositorySession() == null) {
+			return new SessionHashMemo();
+		}
+		SessionData data = session.getRepositorySession().getData();
+		Object existing = data.get(SESSION_KEY);
+		if (existing == null) {
+			data.set(SESSION_KEY, null, new SessionHashMemo());
+			existing = data.get(SESSION_KEY);
+		}
+		// A memo from another version of this plugin in the same build would be loaded by a different class loader
+		return (existing instanceof SessionHashMemo ? (SessionHashMemo) existing : new SessionHashMemo());
+	}
+
+	/**
+	 * Registers the passed task as the one that computes the digest of the given file, unless one is already registered
+	 * @param cacheKey distinguishes the algorithm and mode of the digest
+	 * @return the task already registered for the file, or the passed task if there was none
+	 */
+	public FutureTask<String> register(File file, String cacheKey, FutureTask<String> task) {
+		FutureTask<String> existing = tasks.putIfAbsent(getKey(file, cacheKey), task);
+		return (existing == null ? task : existing);
+	}
+
+	/**
+	 * Removes the passed task, if it is registered for the given file, so that a failed digest is not memoized
+	 */
+	public void remove(File file, String cacheKey, FutureTask<String> task) {
+		tasks.remove(getKey(file, cacheKey), task);
+	}
+
+	/**
+	 * Keys include the size and last modified time, as files in the local repository may be replaced during a build
+	 */
+	private String getKey(File file, String cacheKey) {
+		return cacheKey + "\t" + file.length() + "\t" + file.lastModified() + "\t" + file.getAbsolutePath();
+	}
+}
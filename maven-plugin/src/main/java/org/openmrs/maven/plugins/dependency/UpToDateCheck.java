@@ -0,0 +1,102 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Determines whether an output file is up to date with the inputs used to produce it.
+ * The inputs, such as artifact coordinates, files, and configuration, are added to a fingerprint, which is recorded
+ * in a fingerprint file along with the size and last modified time of the output after it is written.
+ * The output is up to date if it has not changed since, and the fingerprint of the current inputs matches.
+ */
+public class UpToDateCheck {
+
+	private final File fingerprintFile;
+
+	private final File outputFile;
+
+	private final HashAlgorithm.Hasher hasher = new XxHash64HashAlgorithm().newHasher();
+
+	private String fingerprint;
+
+	/**
+	 * @param fingerprintFile the file in which to record the fingerprint of the inputs
+	 * @param outputFile the output file that is produced from the inputs
+	 */
+	public UpToDateCheck(File fingerprintFile, File outputFile) {
+		this.fingerprintFile = fingerprintFile;
+		this.outputFile = outputFile;
+		add("outputFile", outputFile.getAbsolutePath());
+	}
+
+	/**
+	 * Adds a named input value to the fingerprint
+	 */
+	public UpToDateCheck add(String name, Object value) {
+		if (fingerprint != null) {
+			throw new IllegalStateException("Inputs cannot be added once the fingerprint has been computed");
+		}
+		hasher.update((name + "=" + value + "\n").getBytes(StandardCharsets.UTF_8));
+		return this;
+	}
+
+	/**
+	 * Adds the path, size, and last modified time of the passed file to the fingerprint
+	 */
+	public UpToDateCheck addFile(String name, File file) {
+		if (file == null) {
+			return add(name, null);
+		}
+		return add(name, file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified());
+	}
+
+	/**
+	 * @return the fingerprint of all inputs added
+	 */
+	public String getFingerprint() {
+		if (fingerprint == null) {
+			fingerprint = hasher.hexDigest();
+		}
+		return fingerprint;
+	}
+
+	/**
+	 * @return true if the output file is unchanged since the fingerprint was last recorded, and that fingerprint matches
+	 */
+	public boolean isUpToDate() {
+		if (!outputFile.exists() || !fingerprintFile.exists()) {
+			return false;
+		}
+		try {
+			String recorded = FileUtils.readFileToString(fingerprintFile, StandardCharsets.UTF_8).trim();
+			return recorded.equals(getRecord());
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Records the fingerprint, along with the current size and last modified time of the output file.
+	 * This should be called after the output file has been written
+	 */
+	public void record() throws IOException {
+		FileUtils.writeStringToFile(fingerprintFile, getRecord(), StandardCharsets.UTF_8);
+	}
+
+	private String getRecord() {
+		return getFingerprint() + " " + outputFile.length() + " " + outputFile.lastModified();
+	}
+}
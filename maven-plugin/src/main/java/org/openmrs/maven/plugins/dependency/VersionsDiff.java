@@ -0,0 +1,381 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Compares two sets of versions, each a map of groupId to artifactId to version, as written by create-versions.
+ * As versions files are sorted by groupId and then artifactId, the comparison is a single sorted merge of the entries
+ * of each, streamed from a parser, so that memory use depends only on the number of differences found.
+ * Should either input turn out not to be sorted, both are loaded into sorted maps and compared again.
+ */
+public class VersionsDiff {
+
+	private static final Pattern TIMESTAMPED_SNAPSHOT = Pattern.compile("-\\d{8}\\.\\d{6}-\\d+$");
+
+	private final List<Change> added = new ArrayList<>();
+
+	private final List<Change> removed = new ArrayList<>();
+
+	private final List<Change> changed = new ArrayList<>();
+
+	/**
+	 * Compares the versions in the passed files
+	 */
+	public static VersionsDiff compare(File from, File to) throws IOException {
+		return compare(new FileSource(from), new FileSource(to));
+	}
+
+	/**
+	 * Compares the versions from the passed sources
+	 */
+	public static VersionsDiff compare(Source from, Source to) throws IOException {
+		try {
+			return merge(from, to);
+		}
+		catch (UnsortedException e) {
+			return merge(new MapSource(load(from)), new MapSource(load(to)));
+		}
+	}
+
+	/**
+	 * Performs a sorted merge of the entries of each source
+	 */
+	private static VersionsDiff merge(Source fromSource, Source toSource) throws IOException {
+		VersionsDiff diff = new VersionsDiff();
+		try (EntryIterator fromEntries = new SortCheckingIterator(fromSource.open());
+				EntryIterator toEntries = new SortCheckingIterator(toSource.open())) {
+			Entry from = fromEntries.next();
+			Entry to = toEntries.next();
+			while (from != null || to != null) {
+				int comparison = (from == null ? 1 : to == null ? -1 : from.compareTo(to));
+				if (comparison < 0) {
+					diff.removed.add(new Change(from.groupId, from.artifactId, from.version, null));
+					from = fromEntries.next();
+				}
+				else if (comparison > 0) {
+					diff.added.add(new Change(to.groupId, to.artifactId, null, to.version));
+					to = toEntries.next();
+				}
+				else {
+					if (!Objects.equals(from.version, to.version)) {
+						diff.changed.add(new Change(from.groupId, from.artifactId, from.version, to.version));
+					}
+					from = fromEntries.next();
+					to = toEntries.next();
+				}
+			}
+		}
+		return diff;
+	}
+
+	/**
+	 * Reads all entries of the passed source into a sorted versions map
+	 */
+	private static Map<String, Map<String, String>> load(Source source) throws IOException {
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		try (EntryIterator entries = source.open()) {
+			for (Entry e = entries.next(); e != null; e = entries.next()) {
+				Map<String, String> artifacts = ret.get(e.groupId);
+				if (artifacts == null) {
+					artifacts = new TreeMap<>();
+					ret.put(e.groupId, artifacts);
+				}
+				artifacts.put(e.artifactId, e.version);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return true if no versions were added, removed, or changed
+	 */
+	public boolean isEmpty() {
+		return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+	}
+
+	public List<Change> getAdded() {
+		return added;
+	}
+
+	public List<Change> getRemoved() {
+		return removed;
+	}
+
+	public List<Change> getChanged() {
+		return changed;
+	}
+
+	/**
+	 * @return the added, removed, and changed versions, omitting any of these that are empty, for writing to a file
+	 */
+	public Map<String, List<Change>> toMap() {
+		Map<String, List<Change>> ret = new LinkedHashMap<>();
+		if (!added.isEmpty()) {
+			ret.put("added", added);
+		}
+		if (!removed.isEmpty()) {
+			ret.put("removed", removed);
+		}
+		if (!changed.isEmpty()) {
+			ret.put("changed", changed);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return true if the passed version is a SNAPSHOT, either as -SNAPSHOT or as a specific timestamp and build number
+	 */
+	public static boolean isSnapshot(String version) {
+		return version != null && (version.endsWith("-SNAPSHOT") || TIMESTAMPED_SNAPSHOT.matcher(version).find());
+	}
+
+	/**
+	 * @return the passed version, with any specific SNAPSHOT timestamp and build number replaced by SNAPSHOT
+	 */
+	public static String getBaseVersion(String version) {
+		return (version == null ? null : TIMESTAMPED_SNAPSHOT.matcher(version).replaceFirst("-SNAPSHOT"));
+	}
+
+	/**
+	 * Represents an artifact whose version was added, removed, or changed
+	 */
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	public static class Change {
+
+		private final String groupId;
+		private final String artifactId;
+		private final String fromVersion;
+		private final String toVersion;
+
+		public Change(String groupId, String artifactId, String fromVersion, String toVersion) {
+			this.groupId = groupId;
+			this.artifactId = artifactId;
+			this.fromVersion = fromVersion;
+			this.toVersion = toVersion;
+		}
+
+		public String getGroupId() {
+			return groupId;
+		}
+
+		public String getArtifactId() {
+			return artifactId;
+		}
+
+		public String getFromVersion() {
+			return fromVersion;
+		}
+
+		public String getToVersion() {
+			return toVersion;
+		}
+
+		/**
+		 * @return for a changed version, whether it is only a newer build of the same SNAPSHOT, otherwise null
+		 */
+		public Boolean getSnapshotOnly() {
+			if (fromVersion == null || toVersion == null) {
+				return null;
+			}
+			return isSnapshot(fromVersion) && isSnapshot(toVersion) && getBaseVersion(fromVersion).equals(getBaseVersion(toVersion));
+		}
+	}
+
+	/**
+	 * A source of versions entries, which may be opened more than once
+	 */
+	public interface Source {
+		EntryIterator open() throws IOException;
+	}
+
+	/**
+	 * Iterates over the entries of a source, in the order they are stored
+	 */
+	public interface EntryIterator extends AutoCloseable {
+
+		/**
+		 * @return the next entry, or null if there are no more
+		 */
+		Entry next() throws IOException;
+
+		@Override
+		void close() throws IOException;
+	}
+
+	/**
+	 * A single artifact and its version
+	 */
+	public static class Entry implements Comparable<Entry> {
+
+		final String groupId;
+		final String artifactId;
+		final String version;
+
+		public Entry(String groupId, String artifactId, String version) {
+			this.groupId = groupId;
+			this.artifactId = artifactId;
+			this.version = version;
+		}
+
+		@Override
+		public int compareTo(Entry that) {
+			int ret = groupId.compareTo(that.groupId);
+			return (ret != 0 ? ret : artifactId.compareTo(that.artifactId));
+		}
+	}
+
+	/**
+	 * A source that streams the entries of a versions file, in whichever of the supported formats it is written
+	 */
+	public static class FileSource implements Source {
+
+		private final File file;
+
+		public FileSource(File file) {
+			this.file = file;
+		}
+
+		@Override
+		public EntryIterator open() throws IOException {
+			final JsonParser parser = VersionsFormat.createParser(file);
+			if (parser.nextToken() != null && parser.getCurrentToken() != JsonToken.START_OBJECT) {
+				parser.close();
+				throw new IOException("Expected a map of groupId to artifactId to version in " + file);
+			}
+			return new EntryIterator() {
+
+				private String groupId;
+
+				@Override
+				public Entry next() throws IOException {
+					while (true) {
+						JsonToken token = parser.nextToken();
+						if (token == null) {
+							return null;
+						}
+						if (token == JsonToken.FIELD_NAME) {
+							String name = parser.getCurrentName();
+							token = parser.nextToken();
+							if (token == JsonToken.START_OBJECT) {
+								groupId = name;
+							}
+							else if (groupId != null && token == JsonToken.VALUE_NULL) {
+								throw new IOException("No version for " + groupId + ":" + name + " in " + file);
+							}
+							else if (groupId != null && token.isScalarValue()) {
+								return new Entry(groupId, name, parser.getValueAsString());
+							}
+							else {
+								throw new IOException("Unexpected " + token + " for " + name + " in " + file);
+							}
+						}
+						else if (token == JsonToken.END_OBJECT) {
+							groupId = null;
+						}
+					}
+				}
+
+				@Override
+				public void close() throws IOException {
+					parser.close();
+				}
+			};
+		}
+	}
+
+	/**
+	 * A source over a versions map, in its iteration order
+	 */
+	public static class MapSource implements Source {
+
+		private final Map<String, Map<String, String>> versions;
+
+		public MapSource(Map<String, Map<String, String>> versions) {
+			this.versions = versions;
+		}
+
+		@Override
+		public EntryIterator open() {
+			final Iterator<Map.Entry<String, Map<String, String>>> groups = versions.entrySet().iterator();
+			return new EntryIterator() {
+
+				private String groupId;
+				private Iterator<Map.Entry<String, String>> artifacts;
+
+				@Override
+				public Entry next() {
+					while (artifacts == null || !artifacts.hasNext()) {
+						if (!groups.hasNext()) {
+							return null;
+						}
+						Map.Entry<String, Map<String, String>> group = groups.next();
+						groupId = group.getKey();
+						artifacts = group.getValue().entrySet().iterator();
+					}
+					Map.Entry<String, String> artifact = artifacts.next();
+					return new Entry(groupId, artifact.getKey(), artifact.getValue());
+				}
+
+				@Override
+				public void close() {
+				}
+			};
+		}
+	}
+
+	/**
+	 * Wraps an iterator, failing with an UnsortedException if any entry is not strictly after the previous one
+	 */
+	private static class SortCheckingIterator implements EntryIterator {
+
+		private final EntryIterator delegate;
+		private Entry previous;
+
+		SortCheckingIterator(EntryIterator delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Entry next() throws IOException {
+			Entry next = delegate.next();
+			if (next != null && previous != null && previous.compareTo(next) >= 0) {
+				throw new UnsortedException();
+			}
+			previous = next;
+			return next;
+		}
+
+		@Override
+		public void close() throws IOException {
+			delegate.close();
+		}
+	}
+
+	/**
+	 * Indicates that the entries of a source were found not to be sorted
+	 */
+	private static class UnsortedException extends IOException {
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A Merkle-style summary of a map of groupId to artifactId to value, such as versions or file digests.
+ * Each group has a digest of its sorted artifactIds and values, and the root digest is a digest of the sorted groupIds
+ * and their digests, so that two maps are equal if their root digests are equal, and the groups that differ can be
+ * found by comparing only the group digests.
+ */
+@JsonPropertyOrder({ "algorithm", "root", "groups" })
+public class VersionsDigest {
+
+	public static final String ALGORITHM = HashAlgorithms.SHA256_HEX;
+
+	/**
+	 * The prefix of the comment line in which the root digest is embedded at the start of a versions file
+	 */
+	public static final String ROOT_DIGEST_HEADER = "# root-digest: ";
+
+	private static final HashAlgorithm HASH_ALGORITHM = new MessageDigestHashAlgorithm(ALGORITHM, "SHA-256", "sha256");
+
+	private String root;
+
+	private Map<String, String> groups = new TreeMap<>();
+
+	/**
+	 * @return the digest of the passed map of groupId to artifactId to value
+	 */
+	public static VersionsDigest compute(Map<String, ? extends Map<String, String>> values) {
+		Builder builder = new Builder();
+		for (Map.Entry<String, ? extends Map<String, String>> group : values.entrySet()) {
+			for (Map.Entry<String, String> artifact : new TreeMap<>(group.getValue()).entrySet()) {
+				builder.add(group.getKey(), artifact.getKey(), artifact.getValue());
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return the digest of the entries of the passed source, which must be sorted
+	 */
+	public static VersionsDigest compute(VersionsDiff.Source source) throws IOException {
+		Builder builder = new Builder();
+		try (VersionsDiff.EntryIterator entries = source.open()) {
+			for (VersionsDiff.Entry e = entries.next(); e != null; e = entries.next()) {
+				builder.add(e.groupId, e.artifactId, e.version);
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Each name and value is followed by a character that cannot appear in either, so that entries cannot run together
+	 */
+	private static void update(HashAlgorithm.Hasher hasher, String name, String value) {
+		hasher.update((name + "\t" + value + "\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the root digest embedded at the start of the passed versions file, or null if it has none, as is the case
+	 * for versions files in formats that do not allow comments
+	 */
+	public static String readRootDigest(File file) throws IOException {
+		if (file == null || !file.exists()) {
+			return null;
+		}
+		byte[] header = ROOT_DIGEST_HEADER.getBytes(StandardCharsets.UTF_8);
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+			for (byte b : header) {
+				if (in.read() != b) {
+					return null;
+				}
+			}
+			ByteArrayOutputStream digest = new ByteArrayOutputStream();
+			for (int b = in.read(); b != -1 && b != '\n'; b = in.read()) {
+				digest.write(b);
+			}
+			return new String(digest.toByteArray(), StandardCharsets.UTF_8).trim();
+		}
+	}
+
+	/**
+	 * @return the digest file written alongside the passed versions or hashes file
+	 */
+	public static File getDigestFile(File file) {
+		String name = file.getName();
+		if (name.endsWith(".gz")) {
+			name = name.substring(0, name.length() - ".gz".length());
+		}
+		int extension = name.lastIndexOf('.');
+		String baseName = (extension > 0 ? name.substring(0, extension) : name);
+		return new File(file.getAbsoluteFile().getParentFile(), baseName + "-digest.yml");
+	}
+
+	/**
+	 * @return the groupIds that are added, removed, or changed between this and the passed digest
+	 */
+	public Set<String> getDifferingGroups(VersionsDigest that) {
+		Set<String> ret = new TreeSet<>();
+		if (root != null && root.equals(that.root)) {
+			return ret;
+		}
+		ret.addAll(groups.keySet());
+		ret.addAll(that.groups.keySet());
+		for (Map.Entry<String, String> group : groups.entrySet()) {
+			if (group.getValue().equals(that.groups.get(group.getKey()))) {
+				ret.remove(group.getKey());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Computes a digest from entries as they are visited, holding only a digest for each group rather than the entries.
+	 * The entries of each group must be added in order of their names, but groups may be added in any order.
+	 */
+	public static class Builder {
+
+		private final Map<String, HashAlgorithm.Hasher> groups = new TreeMap<>();
+
+		public Builder add(String groupId, String name, String value) {
+			HashAlgorithm.Hasher hasher = groups.get(groupId);
+			if (hasher == null) {
+				hasher = HASH_ALGORITHM.newHasher();
+				groups.put(groupId, hasher);
+			}
+			update(hasher, name, value);
+			return this;
+		}
+
+		public VersionsDigest build() {
+			VersionsDigest ret = new VersionsDigest();
+			HashAlgorithm.Hasher rootHasher = HASH_ALGORITHM.newHasher();
+			for (Map.Entry<String, HashAlgorithm.Hasher> group : groups.entrySet()) {
+				String digest = group.getValue().hexDigest();
+				ret.groups.put(group.getKey(), digest);
+				update(rootHasher, group.getKey(), digest);
+			}
+			ret.root = rootHasher.hexDigest();
+			return ret;
+		}
+	}
+
+	public String getAlgorithm() {
+		return ALGORITHM;
+	}
+
+	public void setAlgorithm(String algorithm) {
+		if (!ALGORITHM.equals(algorithm)) {
+			throw new IllegalArgumentException("Unsupported digest algorithm " + algorithm);
+		}
+	}
+
+	public String getRoot() {
+		return root;
+	}
+
+	public void setRoot(String root) {
+		this.root = root;
+	}
+
+	public Map<String, String> getGroups() {
+		return groups;
+	}
+
+	public void setGroups(Map<String, String> groups) {
+		this.groups = new TreeMap<>(groups);
+	}
+}
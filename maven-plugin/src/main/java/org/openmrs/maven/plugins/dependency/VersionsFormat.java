@@ -0,0 +1,165 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/**
+ * The encodings in which versions files may be written, chosen by the versionsType.
+ * When reading, the encoding is detected from the first bytes of the file, so files in any of these can be read and
+ * compared regardless of the configured versionsType.
+ */
+public enum VersionsFormat {
+
+	/**
+	 * Pretty-printed YAML, used for the yml and yaml types, and any unrecognized type
+	 */
+	YAML(new YAMLFactory()),
+
+	/**
+	 * Compact JSON, used for the json type
+	 */
+	JSON(new JsonFactory()),
+
+	/**
+	 * Compact JSON compressed with gzip, used for the json.gz type
+	 */
+	JSON_GZIP(new JsonFactory()),
+
+	/**
+	 * The binary Smile encoding of JSON, used for the smile type
+	 */
+	SMILE(new SmileFactory());
+
+	private static final int GZIP_MAGIC = 0x1f8b;
+
+	private static final byte[] SMILE_MAGIC = { ':', ')', '\n' };
+
+	/**
+	 * Mappers are thread-safe once configured, so one is shared by all executions of the plugin
+	 */
+	private final ObjectMapper mapper;
+
+	private final ObjectWriter writer;
+
+	VersionsFormat(JsonFactory factory) {
+		mapper = new ObjectMapper(factory);
+		writer = (factory instanceof YAMLFactory ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer());
+	}
+
+	/**
+	 * @return the format in which versions files of the passed versionsType are written
+	 */
+	public static VersionsFormat forType(String versionsType) {
+		String type = (versionsType == null ? "" : versionsType.toLowerCase());
+		if (type.equals("json")) {
+			return JSON;
+		}
+		if (type.equals("json.gz")) {
+			return JSON_GZIP;
+		}
+		if (type.equals("smile")) {
+			return SMILE;
+		}
+		return YAML;
+	}
+
+	/**
+	 * @return a new parser for the passed file, in the format detected from its contents
+	 */
+	public static JsonParser createParser(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file));
+		try {
+			in.mark(SMILE_MAGIC.length);
+			int first = in.read();
+			int second = in.read();
+			int third = in.read();
+			in.reset();
+			if ((first << 8 | second) == GZIP_MAGIC) {
+				return JSON.getFactory().createParser(new BufferedInputStream(new GZIPInputStream(in)));
+			}
+			if (first == SMILE_MAGIC[0] && second == SMILE_MAGIC[1] && third == SMILE_MAGIC[2]) {
+				return SMILE.getFactory().createParser(in);
+			}
+			if (first == '{') {
+				return JSON.getFactory().createParser(in);
+			}
+			return YAML.getFactory().createParser(in);
+		}
+		catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return true if files in this format may begin with a comment line
+	 */
+	public boolean supportsComments() {
+		return this == YAML;
+	}
+
+	/**
+	 * @return the shared factory for parsers and generators in this format
+	 */
+	public JsonFactory getFactory() {
+		return mapper.getFactory();
+	}
+
+	/**
+	 * @return the shared mapper for this format, which must not be reconfigured
+	 */
+	public ObjectMapper getMapper() {
+		return mapper;
+	}
+
+	/**
+	 * @return a new generator writing to the passed stream in this format
+	 */
+	public JsonGenerator createGenerator(OutputStream out) throws IOException {
+		return getFactory().createGenerator(out);
+	}
+
+	/**
+	 * @return a stream writing to the passed file, compressing what is written if this format requires it
+	 */
+	public OutputStream openOutputStream(File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		if (this == JSON_GZIP) {
+			return new GZIPOutputStream(out, 8192);
+		}
+		return new BufferedOutputStream(out);
+	}
+
+	/**
+	 * Writes the passed object to the passed stream in this format, pretty-printing it if this is a text format
+	 * intended to be read, and closes the stream
+	 */
+	public void write(Object o, OutputStream out) throws IOException {
+		writer.writeValue(out, o);
+	}
+}
@@ -0,0 +1,552 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+/**
+ * A local history of versions maps, as created by create-versions across many builds, from which the points at which
+ * the versions of an artifact or group changed can be found without re-reading each versions map.
+ * Each snapshot of the versions is appended to a log as a header line, followed by a line for each version that was
+ * added, removed, or changed since the previous snapshot, so that the log grows only by what changes.
+ * Alongside the log, an index is appended with the offset of each snapshot header and of each change line, keyed by
+ * groupId and artifactId, so that a query reads only the index, and then seeks to just the lines of the log it needs.
+ * A head file holds the versions of the latest snapshot, to compare the next one with, along with the lengths of the
+ * log and index it was written with.  It is replaced only once both have been appended to, so it marks what has been
+ * committed, and anything beyond these lengths, left by a build that failed while recording, is truncated.
+ * As for the hash cache, recording and querying take a lock on a sibling .lock file, so that several builds may
+ * safely share one history.
+ */
+public class VersionsHistory {
+
+	private static final String SEPARATOR = "\t";
+
+	private static final String SNAPSHOT = "S";
+
+	private static final String CHANGE = "C";
+
+	private static final String LOG_FILE = "history.log";
+
+	private static final String INDEX_FILE = "history.idx";
+
+	private static final String HEAD_FILE = "head.txt";
+
+	private static final String LOCK_FILE = "history.lock";
+
+	/**
+	 * The number of bytes read to find a single line, which is re-read in full in the rare case it is longer
+	 */
+	private static final int MAX_LINE_LENGTH = 1024;
+
+	/**
+	 * File locks are held by the whole JVM, so threads of a parallel build sharing one history synchronize here
+	 */
+	private static final Map<String, Object> JVM_LOCKS = new ConcurrentHashMap<>();
+
+	private static final Comparator<VersionsDiff.Change> GROUP_AND_ARTIFACT_ID = new Comparator<VersionsDiff.Change>() {
+		@Override
+		public int compare(VersionsDiff.Change c1, VersionsDiff.Change c2) {
+			int ret = c1.getGroupId().compareTo(c2.getGroupId());
+			return (ret != 0 ? ret : c1.getArtifactId().compareTo(c2.getArtifactId()));
+		}
+	};
+
+	private final File dir;
+
+	/**
+	 * @param dir the directory in which the history is stored, which is created when a snapshot is first recorded
+	 */
+	public VersionsHistory(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * Appends a snapshot of the passed versions, unless they are the same as those of the latest snapshot
+	 * @param versions the versions to record, which must be sorted
+	 * @param label a label by which the snapshot may be identified, such as the version of the project
+	 * @param timestamp the time of the snapshot, in milliseconds since the epoch
+	 * @return the number of the snapshot appended, starting from 1, or 0 if the versions are unchanged
+	 */
+	public int record(VersionsDiff.Source versions, String label, long timestamp) throws IOException {
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		synchronized (getJvmLock()) {
+			try (FileChannel lockChannel = openLockChannel(); FileLock lock = lockChannel.lock()) {
+				Head head = readHead();
+				truncate(getLogFile(), head.logLength);
+				truncate(getIndexFile(), head.indexLength);
+				VersionsDiff diff = VersionsDiff.compare(new VersionsDiff.MapSource(head.versions), versions);
+				if (head.sequence > 0 && diff.isEmpty()) {
+					return 0;
+				}
+				List<VersionsDiff.Change> changes = new ArrayList<>();
+				changes.addAll(diff.getAdded());
+				changes.addAll(diff.getRemoved());
+				changes.addAll(diff.getChanged());
+				Collections.sort(changes, GROUP_AND_ARTIFACT_ID);
+
+				int sequence = head.sequence + 1;
+				String header = join(SNAPSHOT, Integer.toString(sequence), Long.toString(timestamp), clean(label));
+				StringBuilder index = new StringBuilder();
+				long offset = head.logLength;
+				ByteArrayOutputStream log = new ByteArrayOutputStream();
+				offset += appendLine(log, header);
+				index.append(join(SNAPSHOT, Integer.toString(sequence), Long.toString(head.logLength))).append('\n');
+				for (VersionsDiff.Change change : changes) {
+					index.append(join(CHANGE, change.getGroupId(), change.getArtifactId(), Long.toString(offset))).append('\n');
+					offset += appendLine(log, join(CHANGE, Integer.toString(sequence), change.getGroupId(),
+							change.getArtifactId(), nullToEmpty(change.getFromVersion()), nullToEmpty(change.getToVersion())));
+				}
+				head.logLength = append(getLogFile(), log.toByteArray());
+				head.indexLength = append(getIndexFile(), index.toString().getBytes(StandardCharsets.UTF_8));
+				head.sequence = sequence;
+				head.versions = load(versions);
+				writeHead(head);
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * Finds the snapshots in which the version of any accepted artifact changed, newest first
+	 * @param filter the filter of the artifacts whose changes to find, matched by groupId and artifactId
+	 * @param withOtherChanges if true, each change point includes the other versions changed in the same snapshot
+	 * @param limit the maximum number of change points to return, or less than 1 for all
+	 */
+	public List<ChangePoint> query(ArtifactFilter filter, boolean withOtherChanges, int limit) throws IOException {
+		List<ChangePoint> ret = new ArrayList<>();
+		if (!getLogFile().exists()) {
+			return ret;
+		}
+		synchronized (getJvmLock()) {
+			try (FileChannel lockChannel = openLockChannel(); FileLock lock = lockChannel.lock(0, Long.MAX_VALUE, true)) {
+				Head head = readHead();
+				TreeSet<Long> snapshotOffsets = new TreeSet<>();
+				List<Long> changeOffsets = new ArrayList<>();
+				readIndex(head.indexLength, filter, snapshotOffsets, changeOffsets);
+				Collections.sort(changeOffsets, Collections.reverseOrder());
+				try (RandomAccessFile log = new RandomAccessFile(getLogFile(), "r")) {
+					for (Long changeOffset : changeOffsets) {
+						if (limit > 0 && ret.size() >= limit) {
+							break;
+						}
+						long snapshot = snapshotOffsets.floor(changeOffset);
+						Long nextSnapshot = snapshotOffsets.higher(changeOffset);
+						long end = (nextSnapshot == null ? head.logLength : nextSnapshot);
+						ChangePoint point = new ChangePoint(parseHeader(readLine(log, snapshot, end)),
+								parseChange(readLine(log, changeOffset, end)));
+						if (withOtherChanges) {
+							for (String line : readLines(log, snapshot, end)) {
+								VersionsDiff.Change other = (line.startsWith(CHANGE + SEPARATOR) ? parseChange(line) : null);
+								if (other != null && GROUP_AND_ARTIFACT_ID.compare(other, point.change) != 0) {
+									point.otherChanges.add(other);
+								}
+							}
+						}
+						ret.add(point);
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the number of snapshots recorded
+	 */
+	public int size() throws IOException {
+		return readHead().sequence;
+	}
+
+	/**
+	 * @return the directory in which the history is stored
+	 */
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * Reads the offsets of each snapshot header, and of the change lines of each accepted artifact, from the index
+	 */
+	private void readIndex(long length, ArtifactFilter filter, TreeSet<Long> snapshotOffsets, List<Long> changeOffsets)
+			throws IOException {
+		try (InputStream in = Files.newInputStream(getIndexFile().toPath());
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new BoundedInputStream(in, length),
+						StandardCharsets.UTF_8))) {
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				String[] fields = line.split(SEPARATOR);
+				if (fields[0].equals(SNAPSHOT) && fields.length == 3) {
+					snapshotOffsets.add(Long.parseLong(fields[2]));
+				}
+				else if (fields[0].equals(CHANGE) && fields.length == 4 && filter.accept(fields[1], fields[2], null, null)) {
+					changeOffsets.add(Long.parseLong(fields[3]));
+				}
+			}
+		}
+	}
+
+	private ChangePoint.Snapshot parseHeader(String line) throws IOException {
+		String[] fields = line.split(SEPARATOR, -1);
+		if (fields.length != 4 || !fields[0].equals(SNAPSHOT)) {
+			throw new IOException("Expected a snapshot header in " + getLogFile() + " but found: " + line);
+		}
+		return new ChangePoint.Snapshot(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), fields[3]);
+	}
+
+	private VersionsDiff.Change parseChange(String line) throws IOException {
+		String[] fields = line.split(SEPARATOR, -1);
+		if (fields.length != 6 || !fields[0].equals(CHANGE)) {
+			throw new IOException("Expected a change in " + getLogFile() + " but found: " + line);
+		}
+		return new VersionsDiff.Change(fields[2], fields[3], emptyToNull(fields[4]), emptyToNull(fields[5]));
+	}
+
+	/**
+	 * @return the line of the log starting at the passed offset, reading no further than the passed end
+	 */
+	private String readLine(RandomAccessFile log, long offset, long end) throws IOException {
+		List<String> lines = readLines(log, offset, Math.min(end, offset + MAX_LINE_LENGTH));
+		if (lines.isEmpty()) {
+			lines = readLines(log, offset, end);
+		}
+		if (lines.isEmpty()) {
+			throw new IOException("No line found at offset " + offset + " of " + getLogFile());
+		}
+		return lines.get(0);
+	}
+
+	/**
+	 * @return the complete lines of the log between the passed offsets
+	 */
+	private List<String> readLines(RandomAccessFile log, long offset, long end) throws IOException {
+		byte[] bytes = new byte[(int) (end - offset)];
+		log.seek(offset);
+		log.readFully(bytes);
+		List<String> ret = new ArrayList<>();
+		int start = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			if (bytes[i] == '\n') {
+				ret.add(new String(bytes, start, i - start, StandardCharsets.UTF_8));
+				start = i + 1;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the head, or an empty head if no snapshot has been recorded
+	 */
+	private Head readHead() throws IOException {
+		Head ret = new Head();
+		File headFile = getHeadFile();
+		if (!headFile.exists()) {
+			return ret;
+		}
+		try (BufferedReader reader = Files.newBufferedReader(headFile.toPath(), StandardCharsets.UTF_8)) {
+			String[] fields = reader.readLine().split(SEPARATOR);
+			ret.sequence = Integer.parseInt(fields[0]);
+			ret.logLength = Long.parseLong(fields[1]);
+			ret.indexLength = Long.parseLong(fields[2]);
+			for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+				fields = line.split(SEPARATOR);
+				Map<String, String> artifacts = ret.versions.get(fields[0]);
+				if (artifacts == null) {
+					artifacts = new TreeMap<>();
+					ret.versions.put(fields[0], artifacts);
+				}
+				artifacts.put(fields[1], fields[2]);
+			}
+		}
+		catch (RuntimeException e) {
+			throw new IOException("Unable to read " + headFile, e);
+		}
+		return ret;
+	}
+
+	/**
+	 * Writes the head to a temporary file and then moves it into place, which commits the snapshot just appended
+	 */
+	private void writeHead(Head head) throws IOException {
+		File tempFile = File.createTempFile(HEAD_FILE, ".tmp", dir);
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+				writer.write(join(Integer.toString(head.sequence), Long.toString(head.logLength),
+						Long.toString(head.indexLength)));
+				writer.newLine();
+				for (Map.Entry<String, Map<String, String>> group : head.versions.entrySet()) {
+					for (Map.Entry<String, String> artifact : group.getValue().entrySet()) {
+						writer.write(join(group.getKey(), artifact.getKey(), artifact.getValue()));
+						writer.newLine();
+					}
+				}
+			}
+			Files.move(tempFile.toPath(), getHeadFile().toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally {
+			Files.deleteIfExists(tempFile.toPath());
+		}
+	}
+
+	private Map<String, Map<String, String>> load(VersionsDiff.Source source) throws IOException {
+		Map<String, Map<String, String>> ret = new TreeMap<>();
+		try (VersionsDiff.EntryIterator entries = source.open()) {
+			for (VersionsDiff.Entry e = entries.next(); e != null; e = entries.next()) {
+				Map<String, String> artifacts = ret.get(e.groupId);
+				if (artifacts == null) {
+					artifacts = new TreeMap<>();
+					ret.put(e.groupId, artifacts);
+				}
+				artifacts.put(e.artifactId, e.version);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the length of the file once the passed bytes have been appended, and forced to disk
+	 */
+	private static long append(File file, byte[] bytes) throws IOException {
+		try (FileOutputStream out = new FileOutputStream(file, true)) {
+			out.write(bytes);
+			out.getChannel().force(false);
+			return out.getChannel().size();
+		}
+	}
+
+	/**
+	 * Truncates anything appended to the passed file beyond the passed length, which was never committed
+	 */
+	private static void truncate(File file, long length) throws IOException {
+		if (file.exists() && file.length() > length) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(length);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of bytes written
+	 */
+	private static int appendLine(OutputStream out, String line) throws IOException {
+		byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+		out.write(bytes);
+		return bytes.length;
+	}
+
+	private static String join(String... fields) {
+		StringBuilder ret = new StringBuilder();
+		for (String field : fields) {
+			if (ret.length() > 0) {
+				ret.append(SEPARATOR);
+			}
+			ret.append(field);
+		}
+		return ret.toString();
+	}
+
+	/**
+	 * @return the passed label, with any characters that would break the line format replaced with spaces
+	 */
+	private static String clean(String label) {
+		return (label == null ? "" : label.replaceAll("[\\t\\r\\n]", " "));
+	}
+
+	private static String nullToEmpty(String s) {
+		return (s == null ? "" : s);
+	}
+
+	private static String emptyToNull(String s) {
+		return (s.isEmpty() ? null : s);
+	}
+
+	private File getLogFile() {
+		return new File(dir, LOG_FILE);
+	}
+
+	private File getIndexFile() {
+		return new File(dir, INDEX_FILE);
+	}
+
+	private File getHeadFile() {
+		return new File(dir, HEAD_FILE);
+	}
+
+	private Object getJvmLock() {
+		String path = dir.getAbsolutePath();
+		Object lock = JVM_LOCKS.get(path);
+		if (lock == null) {
+			JVM_LOCKS.putIfAbsent(path, new Object());
+			lock = JVM_LOCKS.get(path);
+		}
+		return lock;
+	}
+
+	private FileChannel openLockChannel() throws IOException {
+		return new RandomAccessFile(new File(dir, LOCK_FILE), "rw").getChannel();
+	}
+
+	/**
+	 * The latest snapshot, and the lengths of the log and index once it was appended
+	 */
+	private static class Head {
+
+		int sequence;
+		long logLength;
+		long indexLength;
+		Map<String, Map<String, String>> versions = new TreeMap<>();
+	}
+
+	/**
+	 * Reads no further than a fixed number of bytes of a stream
+	 */
+	private static class BoundedInputStream extends InputStream {
+
+		private final InputStream in;
+		private long remaining;
+
+		BoundedInputStream(InputStream in, long length) {
+			this.in = in;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			remaining--;
+			return in.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0) {
+				return -1;
+			}
+			int read = in.read(b, off, (int) Math.min(len, remaining));
+			if (read > 0) {
+				remaining -= read;
+			}
+			return read;
+		}
+	}
+
+	/**
+	 * A snapshot in which the version of an artifact changed, along with the other versions changed with it
+	 */
+	@JsonInclude(JsonInclude.Include.NON_EMPTY)
+	@JsonPropertyOrder({ "snapshot", "time", "label", "groupId", "artifactId", "fromVersion", "toVersion",
+			"snapshotOnly", "otherChanges" })
+	public static class ChangePoint {
+
+		private final Snapshot snapshot;
+		private final VersionsDiff.Change change;
+		private final List<VersionsDiff.Change> otherChanges = new ArrayList<>();
+
+		ChangePoint(Snapshot snapshot, VersionsDiff.Change change) {
+			this.snapshot = snapshot;
+			this.change = change;
+		}
+
+		public int getSnapshot() {
+			return snapshot.sequence;
+		}
+
+		/**
+		 * @return the time of the snapshot, in ISO 8601 format in UTC
+		 */
+		public String getTime() {
+			SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+			format.setTimeZone(TimeZone.getTimeZone("UTC"));
+			return format.format(new Date(snapshot.timestamp));
+		}
+
+		public String getLabel() {
+			return snapshot.label;
+		}
+
+		public String getGroupId() {
+			return change.getGroupId();
+		}
+
+		public String getArtifactId() {
+			return change.getArtifactId();
+		}
+
+		public String getFromVersion() {
+			return change.getFromVersion();
+		}
+
+		public String getToVersion() {
+			return change.getToVersion();
+		}
+
+		public Boolean getSnapshotOnly() {
+			return change.getSnapshotOnly();
+		}
+
+		public List<VersionsDiff.Change> getOtherChanges() {
+			return otherChanges;
+		}
+
+		/**
+		 * @return a summary of the change point on a single line
+		 */
+		@Override
+		public String toString() {
+			return "#" + getSnapshot() + " " + getTime() + " " + (getLabel().isEmpty() ? "" : getLabel() + " ")
+					+ getGroupId() + ":" + getArtifactId() + " " + (getFromVersion() == null ? "(added)" : getFromVersion())
+					+ " -> " + (getToVersion() == null ? "(removed)" : getToVersion())
+					+ (otherChanges.isEmpty() ? "" : ", with " + otherChanges.size() + " other changes");
+		}
+
+		static class Snapshot {
+
+			final int sequence;
+			final long timestamp;
+			final String label;
+
+			Snapshot(int sequence, long timestamp, String label) {
+				this.sequence = sequence;
+				this.timestamp = timestamp;
+				this.label = label;
+			}
+		}
+	}
+}
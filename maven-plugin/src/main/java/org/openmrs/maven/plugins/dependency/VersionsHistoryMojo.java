@@ -0,0 +1,67 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+/**
+ * This Mojo queries the local history of versions snapshots recorded by create-versions with recordHistory, for the
+ * snapshots in which the versions of the artifacts matching the includes and excludes changed, newest first.
+ * Each change point is logged, and all are written to a file, along with the other versions that changed with them.
+ * Only the index of the history and the lines of its log for the matching changes are read, so the query is fast
+ * however many snapshots have been recorded.
+ */
+@Mojo(name = "versions-history")
+public class VersionsHistoryMojo extends DependencyMojo {
+
+	/**
+	 * The maximum number of change points to find, or 0 for all
+	 */
+	@Parameter(property = "historyLimit", defaultValue = "50")
+	int historyLimit;
+
+	/**
+	 * If true, each change point includes the other versions that changed in the same snapshot
+	 */
+	@Parameter(property = "includeOtherChanges", defaultValue = "true")
+	boolean includeOtherChanges;
+
+	/**
+	 * @throws MojoExecutionException if an error occurs
+	 */
+	@Override
+	protected void doExecute() throws MojoExecutionException {
+		VersionsHistory history = getVersionsHistory();
+		List<VersionsHistory.ChangePoint> changePoints;
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.HISTORY)) {
+			changePoints = history.query(getArtifactFilter(), includeOtherChanges, historyLimit);
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Unable to query versions history in " + history.getDir(), e);
+		}
+		getLog().info("Found " + changePoints.size() + " changes in versions history " + history.getDir());
+		for (VersionsHistory.ChangePoint changePoint : changePoints) {
+			getLog().info("  " + changePoint);
+		}
+		writeObjectToYamlFile(changePoints, getHistoryOutputFile());
+	}
+
+	/**
+	 * @return the file to which the change points found are written
+	 */
+	public File getHistoryOutputFile() {
+		return new File(outputDir, "versions-history.yml");
+	}
+}
@@ -0,0 +1,75 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams versions entries to a generator as a map of groupId to artifactId to version, as they are visited, so that
+ * the versions never need to be held in memory as a whole.  Entries must be written sorted by groupId and artifactId.
+ */
+public class VersionsWriter implements Closeable {
+
+	private final JsonGenerator generator;
+
+	private String groupId;
+
+	/**
+	 * @param format the format to write
+	 * @param out the stream to write to, which is closed when this writer is closed
+	 * @param header a line written before the versions if not null and the format supports comments
+	 */
+	public VersionsWriter(VersionsFormat format, OutputStream out, String header) throws IOException {
+		if (header != null && format.supportsComments()) {
+			out.write((header + "\n").getBytes(StandardCharsets.UTF_8));
+		}
+		generator = format.createGenerator(out);
+		generator.writeStartObject();
+	}
+
+	/**
+	 * Writes the passed entry, which must sort after any entry already written
+	 */
+	public void write(String groupId, String artifactId, String version) throws IOException {
+		if (!groupId.equals(this.groupId)) {
+			if (this.groupId != null) {
+				generator.writeEndObject();
+			}
+			generator.writeObjectFieldStart(groupId);
+			this.groupId = groupId;
+		}
+		generator.writeStringField(artifactId, version);
+	}
+
+	/**
+	 * Writes all entries of the passed source, which must be sorted
+	 */
+	public void write(VersionsDiff.Source source) throws IOException {
+		try (VersionsDiff.EntryIterator entries = source.open()) {
+			for (VersionsDiff.Entry e = entries.next(); e != null; e = entries.next()) {
+				write(e.groupId, e.artifactId, e.version);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (groupId != null) {
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+		generator.close();
+	}
+}
@@ -0,0 +1,149 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License,
+ * v. 2.0. If a copy of the MPL was not distributed with this file, You can
+ * obtain one at http://mozilla.org/MPL/2.0/. OpenMRS is also distributed under
+ * the terms of the Healthcare Disclaimer located at http://openmrs.org/license.
+ *
+ * Copyright (C) OpenMRS Inc. OpenMRS is a registered trademark and the OpenMRS
+ * graphic logo is a trademark of OpenMRS Inc.
+ */
+package org.openmrs.maven.plugins.dependency;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A HashAlgorithm implementing the 64-bit xxHash algorithm (XXH64) with a seed of 0.
+ * This is not a cryptographic hash, and so should only be used for detecting changes rather than for verifying the
+ * integrity of files, but it runs at close to memory bandwidth, which makes it far cheaper than SHA-1 for large files.
+ * Digests are rendered as the 16 character big-endian hex of the 64-bit value, matching the output of xxhsum.
+ * See https://github.com/Cyan4973/xxHash/blob/dev/doc/xxhash_spec.md
+ */
+public class XxHash64HashAlgorithm implements HashAlgorithm {
+
+	public static final String NAME = "xxHash64";
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private static final int STRIPE_LENGTH = 32;
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public int getDigestLength() {
+		return 8;
+	}
+
+	@Override
+	public String getChecksumExtension() {
+		return null;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		return new XxHash64Hasher();
+	}
+
+	/**
+	 * Streaming XXH64 state.  Input is consumed in 32 byte stripes, with any partial stripe held until more input
+	 * arrives or the digest is computed
+	 */
+	private static class XxHash64Hasher implements Hasher {
+
+		private long v1 = PRIME1 + PRIME2;
+		private long v2 = PRIME2;
+		private long v3 = 0;
+		private long v4 = -PRIME1;
+
+		private long totalLength = 0;
+
+		private final ByteBuffer pending = ByteBuffer.allocate(STRIPE_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+
+		@Override
+		public void update(byte[] bytes) {
+			update(ByteBuffer.wrap(bytes));
+		}
+
+		@Override
+		public void update(ByteBuffer buffer) {
+			ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+			buffer.position(buffer.limit());
+			totalLength += input.remaining();
+			if (pending.position() > 0) {
+				while (pending.hasRemaining() && input.hasRemaining()) {
+					pending.put(input.get());
+				}
+				if (pending.hasRemaining()) {
+					return;
+				}
+				pending.flip();
+				consumeStripe(pending);
+				pending.clear();
+			}
+			while (input.remaining() >= STRIPE_LENGTH) {
+				consumeStripe(input);
+			}
+			pending.put(input);
+		}
+
+		private void consumeStripe(ByteBuffer b) {
+			v1 = round(v1, b.getLong());
+			v2 = round(v2, b.getLong());
+			v3 = round(v3, b.getLong());
+			v4 = round(v4, b.getLong());
+		}
+
+		@Override
+		public String hexDigest() {
+			long h;
+			if (totalLength >= STRIPE_LENGTH) {
+				h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+				h = mergeRound(h, v1);
+				h = mergeRound(h, v2);
+				h = mergeRound(h, v3);
+				h = mergeRound(h, v4);
+			}
+			else {
+				h = PRIME5;
+			}
+			h += totalLength;
+			ByteBuffer remaining = (ByteBuffer) pending.duplicate().order(ByteOrder.LITTLE_ENDIAN).flip();
+			while (remaining.remaining() >= 8) {
+				h ^= round(0, remaining.getLong());
+				h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+			}
+			if (remaining.remaining() >= 4) {
+				h ^= (remaining.getInt() & 0xFFFFFFFFL) * PRIME1;
+				h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+			}
+			while (remaining.hasRemaining()) {
+				h ^= (remaining.get() & 0xFFL) * PRIME5;
+				h = Long.rotateLeft(h, 11) * PRIME1;
+			}
+			h ^= h >>> 33;
+			h *= PRIME2;
+			h ^= h >>> 29;
+			h *= PRIME3;
+			h ^= h >>> 32;
+			return String.format("%016x", h);
+		}
+
+		private static long round(long acc, long input) {
+			acc += input * PRIME2;
+			acc = Long.rotateLeft(acc, 31);
+			return acc * PRIME1;
+		}
+
+		private static long mergeRound(long acc, long val) {
+			acc ^= round(0, val);
+			return acc * PRIME1 + PRIME4;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * A HashAlgorithm registered only in the tests, to check that algorithms are found through the ServiceLoader
+ */
+public class Crc32HashAlgorithm implements HashAlgorithm {
+
+	public static final String NAME = "crc32";
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public int getDigestLength() {
+		return 4;
+	}
+
+	@Override
+	public String getChecksumExtension() {
+		return null;
+	}
+
+	@Override
+	public Hasher newHasher() {
+		final CRC32 crc = new CRC32();
+		return new Hasher() {
+
+			@Override
+			public void update(ByteBuffer buffer) {
+				while (buffer.hasRemaining()) {
+					crc.update(buffer.get());
+				}
+			}
+
+			@Override
+			public void update(byte[] bytes) {
+				crc.update(bytes);
+			}
+
+			@Override
+			public String hexDigest() {
+				return String.format("%08x", crc.getValue());
+			}
+		};
+	}
+}
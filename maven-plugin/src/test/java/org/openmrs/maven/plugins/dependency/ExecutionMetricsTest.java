@@ -0,0 +1,49 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExecutionMetricsTest {
+
+	@Test
+	public void testPeaksOfJvmAreNotReset() {
+		Map<String, Long> peaks = getHeapPeaks();
+		new ExecutionMetrics();
+		for (Map.Entry<String, Long> e : getHeapPeaks().entrySet()) {
+			Long before = peaks.get(e.getKey());
+			if (before != null) {
+				Assert.assertTrue(e.getKey(), e.getValue() >= before);
+			}
+		}
+	}
+
+	@Test
+	public void testPeakHeapIsRecorded() {
+		ExecutionMetrics metrics = new ExecutionMetrics();
+		try (ExecutionMetrics.Timer timer = metrics.time(ExecutionMetrics.HASH)) {
+			metrics.addBytes(ExecutionMetrics.HASH, 1024);
+		}
+		ExecutionMetrics.Summary summary = metrics.getSummary("hash");
+		Assert.assertTrue(summary.getPeakHeapBytes() > 0);
+		Assert.assertEquals(1, summary.getPhases().get(ExecutionMetrics.HASH).getCount());
+		Assert.assertEquals(1024, summary.getPhases().get(ExecutionMetrics.HASH).getBytes());
+	}
+
+	private Map<String, Long> getHeapPeaks() {
+		Map<String, Long> ret = new HashMap<>();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			MemoryUsage peak = (pool.getType() == MemoryType.HEAP && pool.isValid() ? pool.getPeakUsage() : null);
+			if (peak != null) {
+				ret.put(pool.getName(), peak.getUsed());
+			}
+		}
+		return ret;
+	}
+}
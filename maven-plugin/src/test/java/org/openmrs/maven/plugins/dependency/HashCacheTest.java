@@ -0,0 +1,160 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HashCacheTest {
+
+	private static final String ALGORITHM = HashAlgorithms.SHA1_HEX;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDigestsAreReusedByLaterBuildUntilFileChanges() throws Exception {
+		File cacheFile = new File(folder.getRoot(), "hash-cache.txt");
+		File file = newFile("a.jar", "contents");
+		HashCache cache = new HashCache(cacheFile, 10);
+		cache.put(file, ALGORITHM, "digest-a");
+		cache.save();
+
+		HashCache warm = new HashCache(cacheFile, 10);
+		warm.load();
+		Assert.assertEquals(1, warm.size());
+		Assert.assertEquals("digest-a", warm.get(file, ALGORITHM));
+		Assert.assertNull(warm.get(file, HashAlgorithms.MD5_HEX));
+
+		Assert.assertTrue(file.setLastModified(file.lastModified() - 60000));
+		Assert.assertNull(warm.get(file, ALGORITHM));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntriesAreEvictedOnSave() throws Exception {
+		File cacheFile = new File(folder.getRoot(), "hash-cache.txt");
+		File oldest = newFile("oldest.jar", "1");
+		File older = newFile("older.jar", "2");
+		File recent = newFile("recent.jar", "3");
+		File added = newFile("added.jar", "4");
+		FileUtils.writeLines(cacheFile, "UTF-8", Arrays.asList(
+				toLine(oldest, 1000, "digest-oldest"),
+				toLine(recent, 3000, "digest-recent"),
+				toLine(older, 2000, "digest-older")));
+
+		HashCache cache = new HashCache(cacheFile, 2);
+		cache.load();
+		Assert.assertEquals(3, cache.size());
+		cache.put(added, ALGORITHM, "digest-added");
+		cache.save();
+
+		HashCache reloaded = new HashCache(cacheFile, 2);
+		reloaded.load();
+		Assert.assertEquals(2, reloaded.size());
+		Assert.assertEquals("digest-added", reloaded.get(added, ALGORITHM));
+		Assert.assertEquals("digest-recent", reloaded.get(recent, ALGORITHM));
+		Assert.assertNull(reloaded.get(older, ALGORITHM));
+		Assert.assertNull(reloaded.get(oldest, ALGORITHM));
+	}
+
+	@Test
+	public void testSaveMergesEntriesWrittenByAnotherBuild() throws Exception {
+		File cacheFile = new File(folder.getRoot(), "hash-cache.txt");
+		File a = newFile("a.jar", "a");
+		File b = newFile("b.jar", "b");
+		File shared = newFile("shared.jar", "shared");
+		FileUtils.writeLines(cacheFile, "UTF-8", Arrays.asList(toLine(shared, 1000, "digest-stale")));
+
+		HashCache first = new HashCache(cacheFile, 10);
+		HashCache second = new HashCache(cacheFile, 10);
+		first.load();
+		second.load();
+		first.put(a, ALGORITHM, "digest-a");
+		first.put(shared, ALGORITHM, "digest-shared");
+		first.save();
+		second.put(b, ALGORITHM, "digest-b");
+		second.save();
+
+		HashCache merged = new HashCache(cacheFile, 10);
+		merged.load();
+		Assert.assertEquals(3, merged.size());
+		Assert.assertEquals("digest-a", merged.get(a, ALGORITHM));
+		Assert.assertEquals("digest-b", merged.get(b, ALGORITHM));
+		// The entry used most recently wins over the stale entry the second build loaded
+		Assert.assertEquals("digest-shared", merged.get(shared, ALGORITHM));
+	}
+
+	@Test
+	public void testConcurrentSavesKeepEveryEntry() throws Exception {
+		final File cacheFile = new File(folder.getRoot(), "hash-cache.txt");
+		final int writers = 8;
+		final File[] files = new File[writers];
+		for (int i = 0; i < writers; i++) {
+			files[i] = newFile(i + ".jar", Integer.toString(i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		try {
+			List<Future<Void>> saves = new ArrayList<>();
+			for (int i = 0; i < writers; i++) {
+				final int index = i;
+				saves.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						HashCache cache = new HashCache(cacheFile, 100);
+						cache.load();
+						cache.put(files[index], ALGORITHM, "digest-" + index);
+						cache.save();
+						return null;
+					}
+				}));
+			}
+			for (Future<Void> save : saves) {
+				save.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+
+		HashCache merged = new HashCache(cacheFile, 100);
+		merged.load();
+		Assert.assertEquals(writers, merged.size());
+		for (int i = 0; i < writers; i++) {
+			Assert.assertEquals("digest-" + i, merged.get(files[i], ALGORITHM));
+		}
+	}
+
+	@Test
+	public void testUnmodifiedCacheIsNotRewritten() throws Exception {
+		File cacheFile = new File(folder.getRoot(), "hash-cache.txt");
+		HashCache cache = new HashCache(cacheFile, 10);
+		cache.load();
+		cache.save();
+		Assert.assertFalse(cacheFile.exists());
+	}
+
+	private File newFile(String name, String contents) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+		return file;
+	}
+
+	/**
+	 * @return a line of the cache file for the passed file, as last used at the passed time
+	 */
+	private String toLine(File file, long lastUsed, String hash) {
+		return ALGORITHM + "\t" + file.length() + "\t" + file.lastModified() + "\t" + lastUsed + "\t" + hash + "\t"
+				+ file.getAbsolutePath();
+	}
+}
@@ -0,0 +1,167 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class HashingEngineTest {
+
+	/**
+	 * The SHA-1 of "contents"
+	 */
+	private static final String CONTENTS_SHA1 = "4a756ca07e9487f482465a99e8286abc86ba4dc7";
+
+	private static final String WRONG_SHA1 = "0000000000000000000000000000000000000000";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMatchingChecksumFileIsUsedButNotCached() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		newFile("artifact.jar.sha1", CONTENTS_SHA1 + "  artifact.jar\n");
+		HashCache hashCache = newHashCache();
+		HashingEngine engine = newEngine(hashCache, true, 0);
+
+		Assert.assertEquals(CONTENTS_SHA1, engine.getCachedOrResolveHash(file));
+		Assert.assertEquals(0, hashCache.size());
+	}
+
+	@Test
+	public void testMismatchedChecksumFileIsNeverCachedAsComputed() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		newFile("artifact.jar.sha1", WRONG_SHA1);
+		HashCache hashCache = newHashCache();
+
+		// Unverified, the checksum file is trusted, but only for this lookup
+		Assert.assertEquals(WRONG_SHA1, newEngine(hashCache, true, 0).getCachedOrResolveHash(file));
+		Assert.assertEquals(0, hashCache.size());
+		Assert.assertEquals(CONTENTS_SHA1, newEngine(hashCache, false, 0).getCachedOrResolveHash(file));
+	}
+
+	@Test
+	public void testMismatchedChecksumFileIsReplacedByComputedDigestWhenVerified() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		newFile("artifact.jar.sha1", WRONG_SHA1);
+		HashCache hashCache = newHashCache();
+
+		Assert.assertEquals(CONTENTS_SHA1, newEngine(hashCache, true, 100).getCachedOrResolveHash(file));
+		Assert.assertEquals(CONTENTS_SHA1, hashCache.get(file, HashAlgorithms.SHA1_HEX));
+		// Once computed, the cached digest is used rather than the checksum file
+		Assert.assertEquals(CONTENTS_SHA1, newEngine(hashCache, true, 0).getCachedOrResolveHash(file));
+	}
+
+	@Test
+	public void testChecksumFileDigestsAreNotSharedWithModulesNotUsingThem() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		newFile("artifact.jar.sha1", WRONG_SHA1);
+		SessionHashMemo memo = new SessionHashMemo();
+		HashCache hashCache = newHashCache();
+		HashingEngine withChecksums = newEngine(hashCache, true, 0);
+		withChecksums.setSessionMemo(memo);
+		HashingEngine withoutChecksums = newEngine(hashCache, false, 0);
+		withoutChecksums.setSessionMemo(memo);
+
+		Assert.assertEquals(WRONG_SHA1, withChecksums.hashFiles(Collections.singleton(file)).get(file));
+		Assert.assertEquals(0, hashCache.size());
+		Assert.assertEquals(CONTENTS_SHA1, withoutChecksums.hashFiles(Collections.singleton(file)).get(file));
+	}
+
+	@Test
+	public void testInvalidChecksumFileIsIgnored() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		newFile("artifact.jar.sha1", "not a checksum");
+		Assert.assertEquals(CONTENTS_SHA1, newEngine(null, true, 0).getCachedOrResolveHash(file));
+	}
+
+	@Test
+	public void testChecksumFileOlderThanFileIsIgnored() throws Exception {
+		File file = newFile("artifact.jar", "contents");
+		File checksumFile = newFile("artifact.jar.sha1", WRONG_SHA1);
+		// As when a downloaded SNAPSHOT is replaced by a local install, which leaves its checksum file as it was
+		Assert.assertTrue(checksumFile.setLastModified(file.lastModified() - 60000));
+		HashCache hashCache = newHashCache();
+
+		Assert.assertEquals(CONTENTS_SHA1, newEngine(hashCache, true, 0).getCachedOrResolveHash(file));
+		Assert.assertEquals(CONTENTS_SHA1, hashCache.get(file, HashAlgorithms.SHA1_HEX));
+	}
+
+	@Test
+	public void testRepackagedZipWithNewTimestampsKeepsFingerprint() throws Exception {
+		File original = newZip("original.jar", 1000000000000L, "a.txt", "b/c.txt");
+		File repackaged = newZip("repackaged.jar", 1600000000000L, "b/c.txt", "a.txt");
+		HashingEngine engine = newEngine(null, false, 0);
+
+		Assert.assertNotEquals(engine.hashFile(original), engine.hashFile(repackaged));
+		Assert.assertEquals(engine.fingerprintZip(original), engine.fingerprintZip(repackaged));
+		engine.setZipFingerprint(true);
+		Assert.assertEquals(engine.getCachedOrResolveHash(original), engine.getCachedOrResolveHash(repackaged));
+	}
+
+	@Test
+	public void testChangedZipEntryChangesFingerprint() throws Exception {
+		File original = newZip("original.jar", 1000000000000L, "a.txt");
+		File changed = newZip("changed.jar", 1000000000000L, "a.txt");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(changed))) {
+			out.putNextEntry(new ZipEntry("a.txt"));
+			out.write("changed".getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+		HashingEngine engine = newEngine(null, false, 0);
+		Assert.assertNotEquals(engine.fingerprintZip(original), engine.fingerprintZip(changed));
+	}
+
+	@Test
+	public void testFileThatIsNotZipFallsBackToContentHash() throws Exception {
+		File file = newFile("artifact.pom", "contents");
+		HashingEngine engine = newEngine(null, false, 0);
+		engine.setZipFingerprint(true);
+		Assert.assertEquals(CONTENTS_SHA1, engine.fingerprintZip(file));
+		Assert.assertEquals(CONTENTS_SHA1, engine.getCachedOrResolveHash(file));
+	}
+
+	/**
+	 * @return a new zip of the passed entries, each holding its own name, in the passed order and with the passed time
+	 */
+	private File newZip(String name, long time, String... entries) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+			for (String entry : entries) {
+				ZipEntry zipEntry = new ZipEntry(entry);
+				zipEntry.setTime(time);
+				out.putNextEntry(zipEntry);
+				out.write(entry.getBytes(StandardCharsets.UTF_8));
+				out.closeEntry();
+			}
+		}
+		return file;
+	}
+
+	private HashingEngine newEngine(HashCache hashCache, boolean useChecksumFiles, int checksumVerifyPercent)
+			throws Exception {
+		HashingEngine engine = new HashingEngine(HashAlgorithms.forName(HashAlgorithms.SHA1_HEX), 2);
+		engine.setHashCache(hashCache);
+		engine.setUseChecksumFiles(useChecksumFiles);
+		engine.setChecksumVerifyPercent(checksumVerifyPercent);
+		return engine;
+	}
+
+	private HashCache newHashCache() {
+		return new HashCache(new File(folder.getRoot(), "hash-cache.txt"), 100);
+	}
+
+	private File newFile(String name, String contents) throws Exception {
+		File file = new File(folder.getRoot(), name);
+		FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+		return file;
+	}
+}
@@ -0,0 +1,140 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VersionsDiffTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSortedSourcesAreMerged() throws Exception {
+		Map<String, Map<String, String>> from = new TreeMap<>();
+		put(from, "org.openmrs", "openmrs-api", "2.4.0");
+		put(from, "org.openmrs", "openmrs-web", "2.4.0");
+		put(from, "org.openmrs.module", "legacyui-omod", "1.8.0");
+		Map<String, Map<String, String>> to = new TreeMap<>();
+		put(to, "org.openmrs", "openmrs-api", "2.5.0");
+		put(to, "org.openmrs", "openmrs-web", "2.4.0");
+		put(to, "org.openmrs.module", "webservices.rest-omod", "2.29.0");
+
+		VersionsDiff diff = VersionsDiff.compare(new VersionsDiff.MapSource(from), new VersionsDiff.MapSource(to));
+		Assert.assertFalse(diff.isEmpty());
+		Assert.assertEquals(Arrays.asList("added", "removed", "changed"), new ArrayList<>(diff.toMap().keySet()));
+
+		Assert.assertEquals(1, diff.getAdded().size());
+		Assert.assertEquals("webservices.rest-omod", diff.getAdded().get(0).getArtifactId());
+		Assert.assertNull(diff.getAdded().get(0).getFromVersion());
+		Assert.assertEquals("2.29.0", diff.getAdded().get(0).getToVersion());
+
+		Assert.assertEquals(1, diff.getRemoved().size());
+		Assert.assertEquals("legacyui-omod", diff.getRemoved().get(0).getArtifactId());
+		Assert.assertEquals("1.8.0", diff.getRemoved().get(0).getFromVersion());
+		Assert.assertNull(diff.getRemoved().get(0).getToVersion());
+
+		Assert.assertEquals(1, diff.getChanged().size());
+		Assert.assertEquals("org.openmrs", diff.getChanged().get(0).getGroupId());
+		Assert.assertEquals("openmrs-api", diff.getChanged().get(0).getArtifactId());
+		Assert.assertEquals("2.4.0", diff.getChanged().get(0).getFromVersion());
+		Assert.assertEquals("2.5.0", diff.getChanged().get(0).getToVersion());
+
+		Assert.assertTrue(VersionsDiff.compare(new VersionsDiff.MapSource(from), new VersionsDiff.MapSource(from)).isEmpty());
+	}
+
+	@Test
+	public void testUnsortedSourcesAreComparedAfterSorting() throws Exception {
+		Map<String, Map<String, String>> from = new LinkedHashMap<>();
+		from.put("org.openmrs.module", new LinkedHashMap<String, String>());
+		from.get("org.openmrs.module").put("webservices.rest-omod", "2.29.0");
+		from.get("org.openmrs.module").put("legacyui-omod", "1.8.0");
+		from.put("org.openmrs", new LinkedHashMap<String, String>());
+		from.get("org.openmrs").put("openmrs-api", "2.4.0");
+		Map<String, Map<String, String>> to = new TreeMap<>();
+		put(to, "org.openmrs", "openmrs-api", "2.4.0");
+		put(to, "org.openmrs.module", "legacyui-omod", "1.9.0");
+		put(to, "org.openmrs.module", "webservices.rest-omod", "2.29.0");
+
+		VersionsDiff diff = VersionsDiff.compare(new VersionsDiff.MapSource(from), new VersionsDiff.MapSource(to));
+		Assert.assertTrue(diff.getAdded().isEmpty());
+		Assert.assertTrue(diff.getRemoved().isEmpty());
+		Assert.assertEquals(1, diff.getChanged().size());
+		Assert.assertEquals("legacyui-omod", diff.getChanged().get(0).getArtifactId());
+		Assert.assertEquals("1.8.0", diff.getChanged().get(0).getFromVersion());
+		Assert.assertEquals("1.9.0", diff.getChanged().get(0).getToVersion());
+	}
+
+	@Test
+	public void testChangesAreSnapshotOnlyBetweenBuildsOfTheSameSnapshot() {
+		Assert.assertTrue(VersionsDiff.isSnapshot("2.4.0-SNAPSHOT"));
+		Assert.assertTrue(VersionsDiff.isSnapshot("2.4.0-20210101.120000-1"));
+		Assert.assertFalse(VersionsDiff.isSnapshot("2.4.0"));
+		Assert.assertFalse(VersionsDiff.isSnapshot(null));
+		Assert.assertEquals("2.4.0-SNAPSHOT", VersionsDiff.getBaseVersion("2.4.0-20210101.120000-1"));
+		Assert.assertEquals("2.4.0", VersionsDiff.getBaseVersion("2.4.0"));
+
+		Assert.assertTrue(change("2.4.0-20210101.120000-1", "2.4.0-20210102.120000-2").getSnapshotOnly());
+		Assert.assertTrue(change("2.4.0-SNAPSHOT", "2.4.0-20210102.120000-2").getSnapshotOnly());
+		Assert.assertFalse(change("2.4.0-20210101.120000-1", "2.5.0-20210102.120000-1").getSnapshotOnly());
+		Assert.assertFalse(change("2.4.0-SNAPSHOT", "2.4.0").getSnapshotOnly());
+		Assert.assertFalse(change("2.4.0", "2.5.0").getSnapshotOnly());
+		Assert.assertNull(change(null, "2.4.0-SNAPSHOT").getSnapshotOnly());
+		Assert.assertNull(change("2.4.0-SNAPSHOT", null).getSnapshotOnly());
+	}
+
+	@Test
+	public void testNullVersionsAreComparedWithoutFailing() throws Exception {
+		Map<String, Map<String, String>> from = new TreeMap<>();
+		put(from, "org.openmrs", "openmrs-api", null);
+		put(from, "org.openmrs", "openmrs-web", null);
+		Map<String, Map<String, String>> to = new TreeMap<>();
+		put(to, "org.openmrs", "openmrs-api", "2.4.0");
+		put(to, "org.openmrs", "openmrs-web", null);
+
+		VersionsDiff diff = VersionsDiff.compare(new VersionsDiff.MapSource(from), new VersionsDiff.MapSource(to));
+		Assert.assertEquals(1, diff.getChanged().size());
+		Assert.assertEquals("openmrs-api", diff.getChanged().get(0).getArtifactId());
+		Assert.assertNull(diff.getChanged().get(0).getFromVersion());
+		Assert.assertNull(diff.getChanged().get(0).getSnapshotOnly());
+	}
+
+	@Test
+	public void testNullVersionsInFilesAreRejected() throws Exception {
+		File valid = new File(folder.getRoot(), "valid.yml");
+		FileUtils.writeStringToFile(valid, "---\norg.openmrs:\n  openmrs-api: \"2.4.0\"\n", "UTF-8");
+		for (String value : Arrays.asList("", " ~", " null")) {
+			File file = new File(folder.getRoot(), "null.yml");
+			FileUtils.writeStringToFile(file, "---\norg.openmrs:\n  openmrs-api:" + value + "\n", "UTF-8");
+			try {
+				VersionsDiff.compare(valid, file);
+				Assert.fail("Expected an IOException for a value of '" + value + "'");
+			}
+			catch (IOException e) {
+				Assert.assertTrue(e.getMessage(), e.getMessage().contains("org.openmrs:openmrs-api"));
+				Assert.assertTrue(e.getMessage(), e.getMessage().contains(file.getPath()));
+			}
+		}
+	}
+
+	private void put(Map<String, Map<String, String>> versions, String groupId, String artifactId, String version) {
+		if (!versions.containsKey(groupId)) {
+			versions.put(groupId, new TreeMap<String, String>());
+		}
+		versions.get(groupId).put(artifactId, version);
+	}
+
+	private VersionsDiff.Change change(String fromVersion, String toVersion) {
+		return new VersionsDiff.Change("org.openmrs", "openmrs-api", fromVersion, toVersion);
+	}
+}
@@ -0,0 +1,66 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class VersionsFormatTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFormatIsChosenByVersionsType() {
+		Assert.assertEquals(VersionsFormat.YAML, VersionsFormat.forType("yml"));
+		Assert.assertEquals(VersionsFormat.YAML, VersionsFormat.forType(null));
+		Assert.assertEquals(VersionsFormat.JSON, VersionsFormat.forType("JSON"));
+		Assert.assertEquals(VersionsFormat.JSON_GZIP, VersionsFormat.forType("json.gz"));
+		Assert.assertEquals(VersionsFormat.SMILE, VersionsFormat.forType("smile"));
+	}
+
+	@Test
+	public void testFilesInEveryFormatAreReadAndComparedAlike() throws Exception {
+		Map<String, Map<String, String>> versions = new TreeMap<>();
+		versions.put("org.openmrs", new TreeMap<String, String>());
+		versions.get("org.openmrs").put("openmrs-api", "2.4.0");
+		versions.get("org.openmrs").put("openmrs-web", "2.4.0-20210101.120000-1");
+		versions.put("org.openmrs.module", new TreeMap<String, String>());
+		versions.get("org.openmrs.module").put("webservices.rest-omod", "2.29.0");
+		VersionsDiff.Source source = new VersionsDiff.MapSource(versions);
+
+		Map<VersionsFormat, File> files = new LinkedHashMap<>();
+		for (VersionsFormat format : VersionsFormat.values()) {
+			File file = new File(folder.getRoot(), "versions-" + format);
+			try (VersionsWriter writer = new VersionsWriter(format, format.openOutputStream(file), "# header")) {
+				writer.write(source);
+			}
+			files.put(format, file);
+		}
+
+		File yaml = files.get(VersionsFormat.YAML);
+		for (Map.Entry<VersionsFormat, File> e : files.entrySet()) {
+			Assert.assertTrue(e.getKey().toString(), VersionsDiff.compare(yaml, e.getValue()).isEmpty());
+			Assert.assertEquals(e.getKey().toString(), VersionsDigest.compute(source).getRoot(),
+					VersionsDigest.compute(new VersionsDiff.FileSource(e.getValue())).getRoot());
+		}
+		Assert.assertTrue(files.get(VersionsFormat.SMILE).length() < yaml.length());
+
+		Map<String, Map<String, String>> changed = new TreeMap<>(versions);
+		changed.put("org.openmrs", new TreeMap<>(versions.get("org.openmrs")));
+		changed.get("org.openmrs").put("openmrs-api", "2.5.0");
+		File changedFile = new File(folder.getRoot(), "changed");
+		try (OutputStream out = VersionsFormat.JSON_GZIP.openOutputStream(changedFile)) {
+			VersionsFormat.JSON_GZIP.write(changed, out);
+		}
+		VersionsDiff diff = VersionsDiff.compare(files.get(VersionsFormat.SMILE), changedFile);
+		Assert.assertEquals(1, diff.getChanged().size());
+		Assert.assertEquals("openmrs-api", diff.getChanged().get(0).getArtifactId());
+	}
+}
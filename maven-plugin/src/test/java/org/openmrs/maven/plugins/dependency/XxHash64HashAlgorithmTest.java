@@ -0,0 +1,116 @@
+package org.openmrs.maven.plugins.dependency;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class XxHash64HashAlgorithmTest {
+
+	/**
+	 * 39 bytes, so longer than one 32 byte stripe
+	 */
+	private static final String LONG_INPUT = "Nobody inspects the spammish repetition";
+
+	private final HashAlgorithm algorithm = new XxHash64HashAlgorithm();
+
+	@Test
+	public void testKnownAnswers() {
+		Assert.assertEquals("ef46db3751d8e999", hash(""));
+		Assert.assertEquals("44bc2cf5ad770999", hash("abc"));
+		Assert.assertEquals("fbcea83c8a378bf1", hash(LONG_INPUT));
+		Assert.assertEquals("e146cb31b65bc21a", hexDigest(newInput()));
+	}
+
+	@Test
+	public void testInputInChunksHasSameDigestAsWholeInput() {
+		byte[] input = newInput();
+		String expected = hexDigest(input);
+		for (int chunkSize : new int[] { 1, 3, 7, 31, 32, 33, 64, 100 }) {
+			HashAlgorithm.Hasher bytes = algorithm.newHasher();
+			HashAlgorithm.Hasher buffers = algorithm.newHasher();
+			HashAlgorithm.Hasher mixed = algorithm.newHasher();
+			for (int from = 0, chunk = 0; from < input.length; from += chunkSize, chunk++) {
+				int to = Math.min(from + chunkSize, input.length);
+				bytes.update(Arrays.copyOfRange(input, from, to));
+				buffers.update(ByteBuffer.wrap(input, from, to - from));
+				if (chunk % 2 == 0) {
+					mixed.update(Arrays.copyOfRange(input, from, to));
+				}
+				else {
+					ByteBuffer direct = ByteBuffer.allocateDirect(to - from);
+					direct.put(input, from, to - from).flip();
+					mixed.update(direct);
+					Assert.assertFalse(direct.hasRemaining());
+				}
+			}
+			Assert.assertEquals("chunks of " + chunkSize, expected, bytes.hexDigest());
+			Assert.assertEquals("buffers of " + chunkSize, expected, buffers.hexDigest());
+			Assert.assertEquals("mixed chunks of " + chunkSize, expected, mixed.hexDigest());
+		}
+	}
+
+	@Test
+	public void testEmptyUpdatesDoNotChangeDigest() {
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		hasher.update(new byte[0]);
+		hasher.update("abc".getBytes(StandardCharsets.UTF_8));
+		hasher.update(ByteBuffer.allocate(0));
+		Assert.assertEquals("44bc2cf5ad770999", hasher.hexDigest());
+	}
+
+	@Test
+	public void testAlgorithmsAreFoundByName() throws Exception {
+		Assert.assertTrue(HashAlgorithms.forName(HashAlgorithms.XXHASH64) instanceof XxHash64HashAlgorithm);
+		Assert.assertTrue(HashAlgorithms.forName("XXHASH64") instanceof XxHash64HashAlgorithm);
+		Assert.assertEquals(HashAlgorithms.SHA1_HEX, HashAlgorithms.forName("SHA1HEX").getName());
+	}
+
+	@Test
+	public void testAlgorithmsAreFoundThroughServiceLoader() throws Exception {
+		HashAlgorithm crc32 = HashAlgorithms.forName("CRC32");
+		Assert.assertTrue(crc32 instanceof Crc32HashAlgorithm);
+		HashAlgorithm.Hasher hasher = crc32.newHasher();
+		hasher.update("abc".getBytes(StandardCharsets.UTF_8));
+		Assert.assertEquals("352441c2", hasher.hexDigest());
+	}
+
+	@Test
+	public void testUnknownAlgorithmNamesTheAvailableAlgorithms() {
+		try {
+			HashAlgorithms.forName("unknown");
+			Assert.fail();
+		}
+		catch (MojoExecutionException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(XxHash64HashAlgorithm.NAME));
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(Crc32HashAlgorithm.NAME));
+		}
+	}
+
+	/**
+	 * @return 1027 bytes, so several stripes and a remainder of each size handled at the end
+	 */
+	private byte[] newInput() {
+		byte[] ret = new byte[1027];
+		for (int i = 0; i < 1024; i++) {
+			ret[i] = (byte) i;
+		}
+		ret[1024] = 'x';
+		ret[1025] = 'y';
+		ret[1026] = 'z';
+		return ret;
+	}
+
+	private String hash(String input) {
+		return hexDigest(input.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private String hexDigest(byte[] input) {
+		HashAlgorithm.Hasher hasher = algorithm.newHasher();
+		hasher.update(input);
+		return hasher.hexDigest();
+	}
+}